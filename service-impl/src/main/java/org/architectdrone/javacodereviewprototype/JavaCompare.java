@@ -17,6 +17,7 @@ import lombok.AllArgsConstructor;
 import org.apache.commons.io.FileUtils;
 import org.architectdrone.javacodereviewprototype.java.JavaTree;
 import org.architectdrone.javacodereviewprototype.tree.ChangeDistillationTreeMatchImpl;
+import org.architectdrone.javacodereviewprototype.tree.SymbolTable;
 
 @AllArgsConstructor
 public class JavaCompare {
@@ -24,8 +25,9 @@ public class JavaCompare {
     String fileB;
 
     public boolean semanticComparison() {
-        JavaTree treeA = new JavaTree(StaticJavaParser.parse(fileA), true);
-        JavaTree treeB = new JavaTree(StaticJavaParser.parse(fileB), false);
+        SymbolTable<Class<Node>> symbolTable = new SymbolTable<>();
+        JavaTree treeA = new JavaTree(StaticJavaParser.parse(fileA), true, symbolTable);
+        JavaTree treeB = new JavaTree(StaticJavaParser.parse(fileB), false, symbolTable);
         return treeA.treeEquals(treeB);
     }
 
@@ -8,8 +8,12 @@ import com.google.inject.Inject;
 import java.text.MessageFormat;
 import org.architectdrone.javacodereviewprototype.context.language.display.DisplayElement;
 import org.architectdrone.javacodereviewprototype.java.JavaTree;
+import org.architectdrone.javacodereviewprototype.java.LineAnchoring;
+import org.architectdrone.javacodereviewprototype.java.MemberPartitioning;
 import org.architectdrone.javacodereviewprototype.tree.DiffTree;
+import org.architectdrone.javacodereviewprototype.tree.MatchConfig;
 import org.architectdrone.javacodereviewprototype.tree.PopulateDiffTree;
+import org.architectdrone.javacodereviewprototype.tree.SymbolTable;
 import org.architectdrone.javacodereviewprototype.tree.TreeMatch;
 
 /**
@@ -18,12 +22,24 @@ import org.architectdrone.javacodereviewprototype.tree.TreeMatch;
 public class JavaContext implements LanguageContext {
     TreeMatch treeMatch;
     PopulateDiffTree populateDiffTree;
+    MatchConfig matchConfig;
+    MemberPartitioning memberPartitioning;
 
-    @Inject
     public JavaContext(TreeMatch treeMatch, PopulateDiffTree populateDiffTree)
+    {
+        this(treeMatch, populateDiffTree, MatchConfig.DEFAULT, null);
+    }
+
+    /**
+     * @param memberPartitioning Used when {@link MatchConfig#isMemberPartitioning()} is set. May be null otherwise.
+     */
+    @Inject
+    public JavaContext(TreeMatch treeMatch, PopulateDiffTree populateDiffTree, MatchConfig matchConfig, MemberPartitioning memberPartitioning)
     {
         this.treeMatch = treeMatch;
         this.populateDiffTree = populateDiffTree;
+        this.matchConfig = matchConfig;
+        this.memberPartitioning = memberPartitioning;
     }
 
     @Override
@@ -51,11 +67,27 @@ public class JavaContext implements LanguageContext {
         return new JavaTree(StaticJavaParser.parse(file), isOriginal);
     }
 
+    /**
+     * Parses a file, interning its labels and values in the given symbol table.
+     */
+    public DiffTree<Class<Node>> parse(final String file, final Boolean isOriginal, final SymbolTable<Class<Node>> symbolTable) {
+        return new JavaTree(StaticJavaParser.parse(file), isOriginal, symbolTable);
+    }
+
     public DiffTree<Class<Node>> getPopulatedDiffTree(final String fileA, final String fileB)
     {
-        DiffTree<Class<Node>> original = parse(fileA, true);
-        DiffTree<Class<Node>> modified = parse(fileB, false);
+        SymbolTable<Class<Node>> symbolTable = new SymbolTable<>();
+        DiffTree<Class<Node>> original = parse(fileA, true, symbolTable);
+        DiffTree<Class<Node>> modified = parse(fileB, false, symbolTable);
 
+        if (matchConfig.isLineAnchoring())
+        {
+            LineAnchoring.matchUnchangedLines((JavaTree) original, (JavaTree) modified, fileA, fileB, matchConfig.getLineAnchoringMaximumEdits());
+        }
+        if (matchConfig.isMemberPartitioning())
+        {
+            memberPartitioning.matchMembers((JavaTree) original, (JavaTree) modified);
+        }
         treeMatch.matchTrees(original, modified);
         populateDiffTree.populateDiffTree(original, modified);
 
@@ -1,21 +1,55 @@
 package org.architectdrone.javacodereviewprototype.dependencyinjection;
 
 import com.google.inject.AbstractModule;
+import com.google.inject.Singleton;
+import org.architectdrone.javacodereviewprototype.tree.AdaptiveTreeMatchImpl;
 import org.architectdrone.javacodereviewprototype.tree.ChangeDistillationTreeMatchImpl;
+import org.architectdrone.javacodereviewprototype.tree.GumTreeTreeMatchImpl;
+import org.architectdrone.javacodereviewprototype.tree.MatchConfig;
 import org.architectdrone.javacodereviewprototype.tree.PopulateDiffTree;
 import org.architectdrone.javacodereviewprototype.tree.PopulateDiffTreeImpl;
 import org.architectdrone.javacodereviewprototype.tree.TreeMatch;
 import org.architectdrone.javacodereviewprototype.utils.common.CommonUtils;
 import org.architectdrone.javacodereviewprototype.utils.common.CommonUtilsImpl;
+import org.architectdrone.javacodereviewprototype.utils.strings.CachingStringSimilarity;
 import org.architectdrone.javacodereviewprototype.utils.strings.StringSimilarity;
 import org.architectdrone.javacodereviewprototype.utils.strings.StringSimilarityImpl;
 
 public class DefaultModule extends AbstractModule {
+    private final MatchConfig matchConfig;
+
+    public DefaultModule()
+    {
+        this(MatchConfig.DEFAULT);
+    }
+
+    /**
+     * @param matchConfig Settings for tree matching, for example to use {@link org.architectdrone.javacodereviewprototype.tree.LeafMatchingMode#MIN_HASH} on very large files,
+     *                    or {@link org.architectdrone.javacodereviewprototype.tree.TreeMatchAlgorithm#GUMTREE} instead of Change Distilling.
+     */
+    public DefaultModule(MatchConfig matchConfig)
+    {
+        this.matchConfig = matchConfig;
+    }
+
     @Override
     protected void configure() {
+        bind(MatchConfig.class).toInstance(matchConfig);
         bind(StringSimilarity.class).to(StringSimilarityImpl.class);
+        bind(CachingStringSimilarity.class).in(Singleton.class); //Only used to pair members by name. Shared, so that every diff benefits from the results of the others.
         bind(CommonUtils.class).to(CommonUtilsImpl.class);
-        bind(TreeMatch.class).to(ChangeDistillationTreeMatchImpl.class);
+        switch (matchConfig.getTreeMatchAlgorithm())
+        {
+            case GUMTREE:
+                bind(TreeMatch.class).to(GumTreeTreeMatchImpl.class);
+                break;
+            case ADAPTIVE:
+                bind(TreeMatch.class).to(AdaptiveTreeMatchImpl.class);
+                bind(AdaptiveTreeMatchImpl.class).in(Singleton.class); //Shared, so that its records cover every diff.
+                break;
+            default:
+                bind(TreeMatch.class).to(ChangeDistillationTreeMatchImpl.class);
+        }
         bind(PopulateDiffTree.class).to(PopulateDiffTreeImpl.class);
     }
 }
@@ -7,6 +7,7 @@ import com.github.javaparser.ast.expr.*;
 import com.github.javaparser.ast.type.PrimitiveType;
 import lombok.Getter;
 import org.architectdrone.javacodereviewprototype.tree.DiffTree;
+import org.architectdrone.javacodereviewprototype.tree.SymbolTable;
 import com.github.javaparser.ast.Node;
 
 import java.util.List;
@@ -16,6 +17,16 @@ import java.util.stream.Collectors;
 public class JavaTree extends DiffTree<Class<Node>> {
     @Getter private final Node javaParserNode;
     public JavaTree(Node javaParserNode, boolean isOriginal) {
+        this(javaParserNode, isOriginal, new SymbolTable<>());
+    }
+
+    /**
+     * Creates a tree whose labels and values are interned in the given symbol table.
+     * @param javaParserNode The root node.
+     * @param isOriginal Whether this is the original tree.
+     * @param symbolTable The symbol table. Pass the same one for both trees of a diff, so that their ids can be compared.
+     */
+    public JavaTree(Node javaParserNode, boolean isOriginal, SymbolTable<Class<Node>> symbolTable) {
         super(
                 (Class<Node>) javaParserNode.getClass(),
                 javaParserNodeToString(javaParserNode),
@@ -24,11 +35,12 @@ public class JavaTree extends DiffTree<Class<Node>> {
                         .stream()
                         .filter(c -> !(c instanceof LineComment))
                         .filter(c -> !(c instanceof SimpleName))
-                        .map(c -> new JavaTree(c, isOriginal))
+                        .map(c -> new JavaTree(c, isOriginal, symbolTable))
                         .collect(Collectors.toList()),
                 isOriginal
         );
         this.javaParserNode = javaParserNode;
+        intern(symbolTable);
     }
 
     /**
@@ -0,0 +1,137 @@
+package org.architectdrone.javacodereviewprototype.java;
+
+import com.github.javaparser.Range;
+import com.github.javaparser.ast.Node;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import org.architectdrone.javacodereviewprototype.tree.DiffTree;
+import org.architectdrone.javacodereviewprototype.utils.strings.LineDiff;
+
+/**
+ * Matches the parts of two Java trees that lie in lines a line diff found unchanged, before the trees are matched.
+ * <p>
+ * A change usually touches a few lines of a large file. A node whose source lies entirely inside lines that are unchanged
+ * and aligned with the same offset is matched with the node of the same label at the aligned position, together with
+ * its whole subtree, as long as the two subtrees are identical. Matched nodes are skipped by the tree matcher, so only
+ * the nodes overlapping changed lines go through full matching.
+ */
+public final class LineAnchoring {
+    private LineAnchoring() {
+    }
+
+    /**
+     * @param treeA The original tree, parsed from fileA.
+     * @param treeB The modified tree, parsed from fileB.
+     * @param fileA The original source.
+     * @param fileB The modified source.
+     * @param maximumEdits How many changed lines the line diff looks for. When the files differ by more, nothing is matched.
+     * @return How many nodes of A were matched.
+     */
+    public static int matchUnchangedLines(JavaTree treeA, JavaTree treeB, String fileA, String fileB, int maximumEdits)
+    {
+        int[] unchangedLines = LineDiff.getUnchangedLines(fileA, fileB, maximumEdits);
+        if (unchangedLines == null)
+        {
+            return 0;
+        }
+        Map<Position, JavaTree> nodesB = new HashMap<>();
+        indexPositions(treeB, nodesB);
+        return matchUnchangedLines(treeA, unchangedLines, nodesB);
+    }
+
+    private static int matchUnchangedLines(JavaTree nodeA, int[] unchangedLines, Map<Position, JavaTree> nodesB)
+    {
+        Optional<Range> range = nodeA.getJavaParserNode().getRange();
+        if (range.isPresent() && !nodeA.isMatched())
+        {
+            int lineOffset = getLineOffset(range.get(), unchangedLines);
+            if (lineOffset != Integer.MIN_VALUE)
+            {
+                JavaTree nodeB = nodesB.get(new Position(nodeA.getLabel(), range.get(), lineOffset));
+                if (nodeB != null && !nodeB.isMatched() && nodeA.treeEquals(nodeB))
+                {
+                    nodeA.matchSubtree(nodeB);
+                    return nodeA.getDescendants(true).size() + 1;
+                }
+            }
+        }
+        int matched = 0;
+        for (DiffTree<Class<Node>> child : nodeA.getChildren())
+        {
+            matched += matchUnchangedLines((JavaTree) child, unchangedLines, nodesB);
+        }
+        return matched;
+    }
+
+    /**
+     * @return How many lines further down the lines of the range moved, or Integer.MIN_VALUE if they were not all kept
+     * together, in the same order.
+     */
+    private static int getLineOffset(Range range, int[] unchangedLines)
+    {
+        int begin = range.begin.line - 1;
+        int end = range.end.line - 1;
+        if (begin < 0 || end >= unchangedLines.length || unchangedLines[begin] == -1)
+        {
+            return Integer.MIN_VALUE;
+        }
+        int offset = unchangedLines[begin] - begin;
+        for (int line = begin + 1; line <= end; line++)
+        {
+            if (unchangedLines[line] != line + offset)
+            {
+                return Integer.MIN_VALUE;
+            }
+        }
+        return offset;
+    }
+
+    /**
+     * Indexes every node by position. When nodes share a label and a range, the outermost one is kept.
+     */
+    private static void indexPositions(JavaTree node, Map<Position, JavaTree> nodes)
+    {
+        node.getJavaParserNode().getRange().ifPresent(range -> nodes.putIfAbsent(new Position(node.getLabel(), range, 0), node));
+        for (DiffTree<Class<Node>> child : node.getChildren())
+        {
+            indexPositions((JavaTree) child, nodes);
+        }
+    }
+
+    private static final class Position {
+        private final Class<Node> label;
+        private final int beginLine;
+        private final int beginColumn;
+        private final int endLine;
+        private final int endColumn;
+
+        Position(Class<Node> label, Range range, int lineOffset)
+        {
+            this.label = label;
+            this.beginLine = range.begin.line + lineOffset;
+            this.beginColumn = range.begin.column;
+            this.endLine = range.end.line + lineOffset;
+            this.endColumn = range.end.column;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (!(o instanceof Position))
+            {
+                return false;
+            }
+            Position other = (Position) o;
+            return label == other.label && beginLine == other.beginLine && beginColumn == other.beginColumn
+                    && endLine == other.endLine && endColumn == other.endColumn;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(label, beginLine, beginColumn, endLine, endColumn);
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package org.architectdrone.javacodereviewprototype.java;
+
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.BodyDeclaration;
+import com.github.javaparser.ast.body.CallableDeclaration;
+import com.github.javaparser.ast.body.FieldDeclaration;
+import com.github.javaparser.ast.body.TypeDeclaration;
+import com.github.javaparser.ast.body.VariableDeclarator;
+import com.github.javaparser.utils.Pair;
+import com.google.inject.Inject;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.architectdrone.javacodereviewprototype.tree.DiffTree;
+import org.architectdrone.javacodereviewprototype.tree.MatchConfig;
+import org.architectdrone.javacodereviewprototype.tree.TreeMatch;
+import org.architectdrone.javacodereviewprototype.utils.common.ForkJoinPools;
+import org.architectdrone.javacodereviewprototype.utils.strings.CachingStringSimilarity;
+import org.architectdrone.javacodereviewprototype.utils.strings.StringSimilarity;
+
+/**
+ * Splits the matching of two Java trees into one small problem per type member, and solves them in parallel.
+ * <p>
+ * Members (methods, constructors, fields, initializers, nested types...) of matching types are paired up, first by
+ * signature, then by name, and then by name similarity. Paired nested types are split further. Every other pair is
+ * matched on its own with {@link TreeMatch#matchSubtrees}. The nodes that are left unmatched, including whole members
+ * that found no partner, are then matched by {@link TreeMatch#matchTrees} on the whole trees, which catches code that
+ * moved from one member to another. Pairs are matched in parallel on the shared pool of
+ * {@link MatchConfig#getMemberMatchingParallelism()} threads (see {@link ForkJoinPools#getShared}).
+ */
+public class MemberPartitioning {
+    private final TreeMatch treeMatch;
+    private final StringSimilarity stringSimilarity;
+    private final MatchConfig matchConfig;
+
+    /**
+     * @param stringSimilarity Compares member names. The same names come up in every diff, so their similarities are cached.
+     */
+    @Inject
+    public MemberPartitioning(TreeMatch treeMatch, CachingStringSimilarity stringSimilarity, MatchConfig matchConfig)
+    {
+        this.treeMatch = treeMatch;
+        this.stringSimilarity = stringSimilarity;
+        this.matchConfig = matchConfig;
+    }
+
+    /**
+     * Pairs up the members of two trees, and matches every pair. Populates the advanced data of both trees, which
+     * {@link TreeMatch#matchTrees} then reuses.
+     * @param treeA The original tree.
+     * @param treeB The modified tree.
+     * @return How many member pairs were matched.
+     */
+    public int matchMembers(JavaTree treeA, JavaTree treeB)
+    {
+        treeA.populateAdvancedData();
+        treeB.populateAdvancedData();
+        List<Pair<JavaTree, JavaTree>> memberPairs = new ArrayList<>();
+        pairMembers(treeA, treeB, memberPairs);
+        if (matchConfig.getMemberMatchingParallelism() <= 1)
+        {
+            for (Pair<JavaTree, JavaTree> pair : memberPairs)
+            {
+                treeMatch.matchSubtrees(pair.a, pair.b);
+            }
+            return memberPairs.size();
+        }
+        List<Callable<Void>> tasks = memberPairs.stream()
+                .map(pair -> (Callable<Void>) () -> {
+                    treeMatch.matchSubtrees(pair.a, pair.b);
+                    return null;
+                })
+                .collect(Collectors.toList());
+        try
+        {
+            for (Future<Void> result : ForkJoinPools.getShared(matchConfig.getMemberMatchingParallelism()).invokeAll(tasks))
+            {
+                result.get();
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while matching members.", e);
+        }
+        catch (ExecutionException e)
+        {
+            throw new RuntimeException("Failed to match members.", e.getCause());
+        }
+        return memberPairs.size();
+    }
+
+    /**
+     * Pairs up the members declared directly in two nodes. Paired types are matched right away, and their own members are
+     * paired up in turn. Other pairs are added to the list, to be matched later.
+     */
+    private void pairMembers(JavaTree containerA, JavaTree containerB, List<Pair<JavaTree, JavaTree>> memberPairs)
+    {
+        List<JavaTree> membersA = getMembers(containerA);
+        List<JavaTree> membersB = getMembers(containerB);
+        List<Pair<JavaTree, JavaTree>> pairs = new ArrayList<>();
+        pairByKey(membersA, membersB, MemberPartitioning::getSignature, pairs);
+        pairByKey(membersA, membersB, member -> member.getLabel().getName() + ":" + member.getValue(), pairs);
+        pairBySimilarName(membersA, membersB, pairs);
+
+        for (Pair<JavaTree, JavaTree> pair : pairs)
+        {
+            if (pair.a.getJavaParserNode() instanceof TypeDeclaration)
+            {
+                pair.a.setMatch(pair.b);
+                pairMembers(pair.a, pair.b, memberPairs);
+            }
+            else
+            {
+                memberPairs.add(pair);
+            }
+        }
+    }
+
+    private static List<JavaTree> getMembers(JavaTree container)
+    {
+        List<JavaTree> members = new ArrayList<>();
+        for (DiffTree<Class<Node>> child : container.getChildren())
+        {
+            if (((JavaTree) child).getJavaParserNode() instanceof BodyDeclaration)
+            {
+                members.add((JavaTree) child);
+            }
+        }
+        return members;
+    }
+
+    /**
+     * Pairs up members whose keys are unique on both sides and equal, and removes them from the lists.
+     */
+    private static void pairByKey(List<JavaTree> membersA, List<JavaTree> membersB, Function<JavaTree, String> getKey, List<Pair<JavaTree, JavaTree>> pairs)
+    {
+        Map<String, JavaTree> uniqueMembersB = getUniqueMembers(membersB, getKey);
+        Map<String, JavaTree> uniqueMembersA = getUniqueMembers(membersA, getKey);
+        for (Map.Entry<String, JavaTree> entry : uniqueMembersA.entrySet())
+        {
+            JavaTree memberB = uniqueMembersB.get(entry.getKey());
+            if (memberB != null)
+            {
+                pairs.add(new Pair<>(entry.getValue(), memberB));
+                membersA.remove(entry.getValue());
+                membersB.remove(memberB);
+            }
+        }
+    }
+
+    /**
+     * @return The members whose keys no other member has, by key, in order.
+     */
+    private static Map<String, JavaTree> getUniqueMembers(List<JavaTree> members, Function<JavaTree, String> getKey)
+    {
+        Map<String, JavaTree> uniqueMembers = new LinkedHashMap<>();
+        Map<String, Integer> counts = new HashMap<>();
+        for (JavaTree member : members)
+        {
+            String key = getKey.apply(member);
+            counts.merge(key, 1, Integer::sum);
+            uniqueMembers.put(key, member);
+        }
+        counts.forEach((key, count) -> {
+            if (count > 1)
+            {
+                uniqueMembers.remove(key);
+            }
+        });
+        return uniqueMembers;
+    }
+
+    /**
+     * Pairs up the remaining members of the same kind whose names are similar enough, most similar first, and removes
+     * them from the lists.
+     */
+    private void pairBySimilarName(List<JavaTree> membersA, List<JavaTree> membersB, List<Pair<JavaTree, JavaTree>> pairs)
+    {
+        while (true)
+        {
+            JavaTree bestA = null;
+            JavaTree bestB = null;
+            float bestSimilarity = 0;
+            for (JavaTree memberA : membersA)
+            {
+                for (JavaTree memberB : membersB)
+                {
+                    if (memberA.getLabel() != memberB.getLabel())
+                    {
+                        continue;
+                    }
+                    float similarity = stringSimilarity.getStringSimilarity(memberA.getValue(), memberB.getValue(), matchConfig.getMemberNameN());
+                    if (similarity >= matchConfig.getMemberNameSimilarityThreshold() && (bestA == null || similarity > bestSimilarity))
+                    {
+                        bestA = memberA;
+                        bestB = memberB;
+                        bestSimilarity = similarity;
+                    }
+                }
+            }
+            if (bestA == null)
+            {
+                return;
+            }
+            pairs.add(new Pair<>(bestA, bestB));
+            membersA.remove(bestA);
+            membersB.remove(bestB);
+        }
+    }
+
+    /**
+     * @return What identifies a member within its type: the kind of member, and its name and parameter types, or the
+     * names of the variables it declares.
+     */
+    private static String getSignature(JavaTree member)
+    {
+        Node node = member.getJavaParserNode();
+        String signature;
+        if (node instanceof CallableDeclaration)
+        {
+            signature = ((CallableDeclaration<?>) node).getSignature().asString();
+        }
+        else if (node instanceof FieldDeclaration)
+        {
+            signature = ((FieldDeclaration) node).getVariables().stream()
+                    .map(VariableDeclarator::getNameAsString)
+                    .collect(Collectors.joining(","));
+        }
+        else
+        {
+            signature = member.getValue();
+        }
+        return member.getLabel().getName() + ":" + signature;
+    }
+}
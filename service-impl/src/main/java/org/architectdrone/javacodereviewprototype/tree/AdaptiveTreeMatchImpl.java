@@ -0,0 +1,211 @@
+package org.architectdrone.javacodereviewprototype.tree;
+
+import com.google.inject.Inject;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.architectdrone.javacodereviewprototype.utils.common.CommonUtils;
+import org.architectdrone.javacodereviewprototype.utils.strings.StringSimilarity;
+
+/**
+ * Implements {@link TreeMatch} by choosing a strategy for every pair of trees, from their sizes.
+ * <p>
+ * Trees of at most {@link MatchConfig#getAdaptiveExactTreeMaximumSize()} nodes are matched exactly
+ * ({@link MatchStrategy#EXACT}). Trees whose leaves make more than {@link MatchConfig#getAdaptiveHashingCandidatePairs()}
+ * same label pairs, which is how many pairs Change Distilling would score, are matched with hashing and MinHash
+ * ({@link MatchStrategy#HASHING}). Everything else goes through Change Distilling ({@link MatchStrategy#CHANGE_DISTILLING}).
+ * <p>
+ * Every choice is recorded, with the sizes it was based on and how long matching took, so that slow diffs can be
+ * traced back to the strategy that ran. The most recent records of whole trees are kept, see {@link #getRecentRecords()}.
+ * Subtrees, like the members that {@link org.architectdrone.javacodereviewprototype.java.MemberPartitioning} matches one
+ * by one, are kept apart (see {@link #getRecentSubtreeRecords()}), so that a diff with many members does not push the
+ * records of whole trees out.
+ */
+public class AdaptiveTreeMatchImpl implements TreeMatch {
+    private static final int RECENT_RECORD_COUNT = 100; //How many records getRecentRecords and getRecentSubtreeRecords each keep.
+
+    private final MatchConfig matchConfig;
+    private final ChangeDistillationTreeMatchImpl changeDistillation;
+    private final ChangeDistillationTreeMatchImpl hashing;
+    private final Deque<MatchRecord> recentRecords = new ArrayDeque<>();
+    private final Deque<MatchRecord> recentSubtreeRecords = new ArrayDeque<>();
+
+    @Inject
+    public AdaptiveTreeMatchImpl(StringSimilarity stringSimilarity, CommonUtils commonUtils, MatchConfig matchConfig)
+    {
+        this.matchConfig = matchConfig;
+        this.changeDistillation = new ChangeDistillationTreeMatchImpl(stringSimilarity, commonUtils, matchConfig);
+        this.hashing = new ChangeDistillationTreeMatchImpl(stringSimilarity, commonUtils, matchConfig.toBuilder()
+                .matchIdenticalSubtrees(true)
+                .matchExactLeafTwins(true)
+                .leafMatchingMode(LeafMatchingMode.MIN_HASH)
+                .innerNodeMatchingMode(InnerNodeMatchingMode.BOTTOM_UP)
+                .build());
+    }
+
+    /**{@inheritDoc} */
+    @Override
+    public <L> void matchTrees(DiffTree<L> treeA, DiffTree<L> treeB) {
+        matchTrees(treeA, treeB, new CancellationToken());
+    }
+
+    /**{@inheritDoc} */
+    @Override
+    public <L> boolean matchTrees(DiffTree<L> treeA, DiffTree<L> treeB, CancellationToken cancellationToken) {
+        int nodeCountA = countNodes(treeA);
+        int nodeCountB = countNodes(treeB);
+        long candidatePairs = countCandidatePairs(treeA, treeB);
+        MatchStrategy strategy = selectStrategy(nodeCountA, nodeCountB, candidatePairs);
+
+        long start = System.nanoTime();
+        boolean isComplete;
+        if (strategy == MatchStrategy.EXACT)
+        {
+            isComplete = !cancellationToken.isCancelled();
+            if (isComplete)
+            {
+                matchExactly(treeA, treeB, Math.max(nodeCountA, nodeCountB));
+            }
+        }
+        else
+        {
+            isComplete = getChangeDistillation(strategy).matchTrees(treeA, treeB, cancellationToken);
+        }
+        record(recentRecords, new MatchRecord(strategy, nodeCountA, nodeCountB, candidatePairs, System.nanoTime() - start));
+        return isComplete;
+    }
+
+    /**{@inheritDoc} */
+    @Override
+    public <L> void matchSubtrees(DiffTree<L> subtreeA, DiffTree<L> subtreeB) {
+        int nodeCountA = countNodes(subtreeA);
+        int nodeCountB = countNodes(subtreeB);
+        long candidatePairs = countCandidatePairs(subtreeA, subtreeB);
+        MatchStrategy strategy = selectStrategy(nodeCountA, nodeCountB, candidatePairs);
+
+        long start = System.nanoTime();
+        if (strategy == MatchStrategy.EXACT)
+        {
+            subtreeA.setMatch(subtreeB);
+            matchDescendantsExactly(subtreeA, subtreeB, Math.max(nodeCountA, nodeCountB));
+        }
+        else
+        {
+            getChangeDistillation(strategy).matchSubtrees(subtreeA, subtreeB);
+        }
+        record(recentSubtreeRecords, new MatchRecord(strategy, nodeCountA, nodeCountB, candidatePairs, System.nanoTime() - start));
+    }
+
+    /**
+     * Chooses the cheapest strategy that is good enough for trees of the given sizes.
+     * @param nodeCountA Number of nodes in the original tree.
+     * @param nodeCountB Number of nodes in the modified tree.
+     * @param candidatePairs Number of pairs of leaves with the same label.
+     * @return The strategy.
+     */
+    MatchStrategy selectStrategy(int nodeCountA, int nodeCountB, long candidatePairs)
+    {
+        if (Math.max(nodeCountA, nodeCountB) <= matchConfig.getAdaptiveExactTreeMaximumSize())
+        {
+            return MatchStrategy.EXACT;
+        }
+        if (candidatePairs > matchConfig.getAdaptiveHashingCandidatePairs())
+        {
+            return MatchStrategy.HASHING;
+        }
+        return MatchStrategy.CHANGE_DISTILLING;
+    }
+
+    /**
+     * @return The records of the most recent matches of whole trees, oldest first.
+     */
+    public synchronized List<MatchRecord> getRecentRecords()
+    {
+        return new ArrayList<>(recentRecords);
+    }
+
+    /**
+     * @return The records of the most recent matches of subtrees, oldest first.
+     */
+    public synchronized List<MatchRecord> getRecentSubtreeRecords()
+    {
+        return new ArrayList<>(recentSubtreeRecords);
+    }
+
+    private synchronized void record(Deque<MatchRecord> records, MatchRecord matchRecord)
+    {
+        if (records.size() == RECENT_RECORD_COUNT)
+        {
+            records.removeFirst();
+        }
+        records.addLast(matchRecord);
+    }
+
+    private ChangeDistillationTreeMatchImpl getChangeDistillation(MatchStrategy strategy)
+    {
+        return strategy == MatchStrategy.HASHING ? hashing : changeDistillation;
+    }
+
+    private <L> void matchExactly(DiffTree<L> treeA, DiffTree<L> treeB, int maximumSize)
+    {
+        if (!treeA.hasAdvancedDataBeenPopulated())
+        {
+            treeA.populateAdvancedData();
+        }
+        if (!treeB.hasAdvancedDataBeenPopulated())
+        {
+            treeB.populateAdvancedData();
+        }
+        treeA.setMatch(treeB);
+        matchDescendantsExactly(treeA, treeB, maximumSize);
+    }
+
+    /**
+     * Matches the descendants the way an optimal edit script maps them, leaving out leaves that Change Distilling's leaf
+     * matching step would not match.
+     */
+    private <L> void matchDescendantsExactly(DiffTree<L> subtreeA, DiffTree<L> subtreeB, int maximumSize)
+    {
+        new TreeEditDistance<L>(maximumSize).matchDescendants(subtreeA, subtreeB, (nodeA, nodeB) ->
+                changeDistillation.canMatchMappedNodes(nodeA, nodeB, matchConfig.getStringSimilarityThreshold(), matchConfig.getN()));
+    }
+
+    private static <L> int countNodes(DiffTree<L> tree)
+    {
+        if (tree.isNumbered())
+        {
+            return tree.getSubtreeSize();
+        }
+        int count = 1;
+        for (DiffTree<L> child : tree.getChildren())
+        {
+            count += countNodes(child);
+        }
+        return count;
+    }
+
+    /**
+     * Estimates how many leaf pairs Change Distilling would score, from the histograms of the labels of the leaves.
+     */
+    private static <L> long countCandidatePairs(DiffTree<L> treeA, DiffTree<L> treeB)
+    {
+        Map<L, long[]> leafCountsByLabel = new HashMap<>();
+        for (DiffTree<L> leaf : treeA.getLeaves())
+        {
+            leafCountsByLabel.computeIfAbsent(leaf.getLabel(), label -> new long[2])[0]++;
+        }
+        for (DiffTree<L> leaf : treeB.getLeaves())
+        {
+            leafCountsByLabel.computeIfAbsent(leaf.getLabel(), label -> new long[2])[1]++;
+        }
+        long candidatePairs = 0;
+        for (long[] leafCounts : leafCountsByLabel.values())
+        {
+            candidatePairs += leafCounts[0] * leafCounts[1];
+        }
+        return candidatePairs;
+    }
+}
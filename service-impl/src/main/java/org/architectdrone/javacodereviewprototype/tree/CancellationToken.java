@@ -0,0 +1,85 @@
+package org.architectdrone.javacodereviewprototype.tree;
+
+import java.time.Duration;
+
+/**
+ * Lets a caller stop a long running match or population, either by cancelling it or by giving it a deadline.
+ * <p>
+ * Cancellation is cooperative: the work checks {@link #isCancelled()} between steps, and stops at the next check.
+ * A token can be shared by several threads, and by every step of a diff.
+ */
+public class CancellationToken {
+    private final long deadline; //In System.nanoTime() units. Only used if hasDeadline is set.
+    private final boolean hasDeadline;
+    private final CancellationToken parent; //This token is cancelled whenever the parent is. Null if there is none.
+    private volatile boolean cancelled;
+    private volatile boolean stoppedWork; //Whether isCancelled has returned true.
+
+    /**
+     * Creates a token without a deadline, which is only cancelled by {@link #cancel()}.
+     */
+    public CancellationToken()
+    {
+        this(0, false, null);
+    }
+
+    private CancellationToken(long deadline, boolean hasDeadline, CancellationToken parent)
+    {
+        this.deadline = deadline;
+        this.hasDeadline = hasDeadline;
+        this.parent = parent;
+    }
+
+    /**
+     * @param timeout How long the work may run, from now.
+     * @return A token that is cancelled once the timeout has passed, or once {@link #cancel()} is called.
+     */
+    public static CancellationToken withTimeout(Duration timeout)
+    {
+        return new CancellationToken(System.nanoTime() + timeout.toNanos(), true, null);
+    }
+
+    /**
+     * Asks the work to stop as soon as it can.
+     */
+    public void cancel()
+    {
+        cancelled = true;
+    }
+
+    /**
+     * @return Whether the token was cancelled, or its deadline has passed.
+     */
+    public boolean isCancelled()
+    {
+        if (!cancelled && ((hasDeadline && System.nanoTime() - deadline >= 0) || (parent != null && parent.isCancelled())))
+        {
+            cancelled = true;
+        }
+        if (cancelled)
+        {
+            stoppedWork = true;
+        }
+        return cancelled;
+    }
+
+    /**
+     * @return A token for one run of some work, which is cancelled whenever this one is, and which tells whether the run
+     * was stopped (see {@link #hasStoppedWork()}). The deadline of this token may pass after the run is over, so asking
+     * this token whether it is cancelled would not tell.
+     */
+    CancellationToken forRun()
+    {
+        return new CancellationToken(0, false, this);
+    }
+
+    /**
+     * Work only checks the token where it would stop if it were cancelled, so the work was stopped early exactly when a
+     * check found the token cancelled.
+     * @return Whether {@link #isCancelled()} has returned true.
+     */
+    boolean hasStoppedWork()
+    {
+        return stoppedWork;
+    }
+}
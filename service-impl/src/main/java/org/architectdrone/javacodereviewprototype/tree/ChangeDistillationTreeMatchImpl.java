@@ -4,9 +4,24 @@ import com.github.javaparser.utils.Pair;
 import com.google.inject.Inject;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 import org.architectdrone.javacodereviewprototype.utils.common.CommonUtils;
+import org.architectdrone.javacodereviewprototype.utils.common.ForkJoinPools;
+import org.architectdrone.javacodereviewprototype.utils.strings.NGramProfile;
 import org.architectdrone.javacodereviewprototype.utils.strings.StringSimilarity;
 
 /**
@@ -15,34 +30,70 @@ import org.architectdrone.javacodereviewprototype.utils.strings.StringSimilarity
  * @see <a href="https://www.researchgate.net/publication/3189787_Change_DistillingTree_Differencing_for_Fine-Grained_Source_Code_Change_Extraction">Change Distilling:Tree Differencing for Fine-Grained Source Code Change Extraction</a>
  */
 public class ChangeDistillationTreeMatchImpl implements TreeMatch {
-    private static final int N = 3; //"n" in "n-grams"
-    private static final int STRING_SIMILARITY_THRESHOLD = 1; //Strings with a similarity lower than this number will be considered not matching.
-    private static final int SMALL_SUBTREE_SIZE = 4; //What size is a "small" subtree. Fluri recommends 4.
-    private static final float SMALL_SUBTREE_SIMILARITY_THRESHOLD = (float) 0.4; //Small subtrees with a similarity lower than this are considered not matching. Fluri recommends 0.4.
-    private static final float LARGE_SUBTREE_SIMILARITY_THRESHOLD = (float) 0.6; //Small subtrees with a similarity lower than this are considered not matching. Fluri recommends 0.6.
+    private static final CancellationToken NEVER_CANCELLED = new CancellationToken(); //Used when there is nothing to stop matching.
 
     final StringSimilarity stringSimilarity;
     final CommonUtils commonUtils;
+    final MatchConfig matchConfig;
 
-    @Inject
     public ChangeDistillationTreeMatchImpl(StringSimilarity stringSimilarity, CommonUtils commonUtils)
+    {
+        this(stringSimilarity, commonUtils, MatchConfig.DEFAULT);
+    }
+
+    @Inject
+    public ChangeDistillationTreeMatchImpl(StringSimilarity stringSimilarity, CommonUtils commonUtils, MatchConfig matchConfig)
     {
         this.stringSimilarity = stringSimilarity;
         this.commonUtils = commonUtils;
+        this.matchConfig = matchConfig;
     }
 
     /**{@inheritDoc} */
     @Override
     public <L> void matchTrees(DiffTree<L> treeA, DiffTree<L> treeB) {
+        matchTrees(treeA, treeB, NEVER_CANCELLED);
+    }
+
+    /**
+     * {@inheritDoc}
+     * The token is checked before every leaf of A is scored, and before every inner node of A is matched. Leaves scored
+     * before the token was cancelled are still matched.
+     */
+    @Override
+    public <L> boolean matchTrees(DiffTree<L> treeA, DiffTree<L> treeB, CancellationToken cancellationToken) {
+        CancellationToken run = cancellationToken.forRun();
         matchTrees(
                 treeA,
                 treeB,
-                STRING_SIMILARITY_THRESHOLD,
-                SMALL_SUBTREE_SIZE,
-                SMALL_SUBTREE_SIMILARITY_THRESHOLD,
-                LARGE_SUBTREE_SIMILARITY_THRESHOLD,
-                N
+                matchConfig.getStringSimilarityThreshold(),
+                matchConfig.getSmallSubtreeSize(),
+                matchConfig.getSmallSubtreeSimilarityThreshold(),
+                matchConfig.getLargeSubtreeSimilarityThreshold(),
+                matchConfig.getN(),
+                run
         );
+        return !run.hasStoppedWork();
+    }
+
+    /**
+     * Matches two subtrees with the leaf and inner node matching steps. The whole trees must have their advanced data
+     * populated; {@link #matchTrees(DiffTree, DiffTree)} then leaves it as it is. Inner nodes are always matched first fit,
+     * since the bottom up candidates of a node can lie outside of the subtrees.
+     */
+    @Override
+    public <L> void matchSubtrees(DiffTree<L> subtreeA, DiffTree<L> subtreeB) {
+        subtreeA.setMatch(subtreeB);
+        long similarityCalls = matchLeafNodes(subtreeA, subtreeB, matchConfig.getStringSimilarityThreshold(), matchConfig.getN(), NEVER_CANCELLED);
+        matchInnerNodesFirstFit(subtreeA,
+                subtreeB,
+                matchConfig.getStringSimilarityThreshold(),
+                matchConfig.getSmallSubtreeSize(),
+                matchConfig.getSmallSubtreeSimilarityThreshold(),
+                matchConfig.getLargeSubtreeSimilarityThreshold(),
+                matchConfig.getN(),
+                getBudget(matchConfig.getMaxSimilarityCalls()) - similarityCalls,
+                NEVER_CANCELLED);
     }
 
     <L> void matchTrees(
@@ -52,15 +103,29 @@ public class ChangeDistillationTreeMatchImpl implements TreeMatch {
             int smallSubtreeSize,
             float smallSubtreeThreshold,
             float largeSubtreeThreshold,
-            int n)
+            int n,
+            CancellationToken cancellationToken)
     {
-        treeA.populateAdvancedData();
-        treeB.populateAdvancedData();
+        if (!treeA.hasAdvancedDataBeenPopulated())
+        {
+            treeA.populateAdvancedData();
+        }
+        if (!treeB.hasAdvancedDataBeenPopulated())
+        {
+            treeB.populateAdvancedData();
+        }
+        treeA.trackMatchedDescendants();
+        treeB.trackMatchedDescendants();
         treeA.setMatch(treeB);
-        matchLeafNodes(treeA,
+        if (matchConfig.isMatchIdenticalSubtrees())
+        {
+            matchIdenticalSubtrees(treeA, treeB);
+        }
+        long similarityCalls = matchLeafNodes(treeA,
                 treeB,
                 stringSimilarityThreshold,
-                n);
+                n,
+                cancellationToken);
 
         matchInnerNodes(treeA,
                 treeB,
@@ -68,35 +133,156 @@ public class ChangeDistillationTreeMatchImpl implements TreeMatch {
                 smallSubtreeSize,
                 smallSubtreeThreshold,
                 largeSubtreeThreshold,
-                n);
+                n,
+                getBudget(matchConfig.getMaxSimilarityCalls()) - similarityCalls,
+                cancellationToken);
+    }
+
+    /**
+     * @return The budget, or Long.MAX_VALUE if there is none.
+     */
+    private static long getBudget(long budget)
+    {
+        return budget > 0 ? budget : Long.MAX_VALUE;
+    }
+
+    /**
+     * Matches identical subtrees wholesale, before any scoring.
+     * The nodes of A are visited top down. A subtree whose hash (see {@link DiffTree#getSubtreeHash()}) appears exactly
+     * once in A and exactly once in B is matched, node for node, with its twin, and its descendants are not visited again.
+     * Subtrees that appear more than once are left to the later phases, which can tell the copies apart by context.
+     * @param treeA The original tree, with advanced data populated.
+     * @param treeB The modified tree, with advanced data populated.
+     * @param <L> Label type.
+     */
+    <L> void matchIdenticalSubtrees(DiffTree<L> treeA, DiffTree<L> treeB)
+    {
+        Map<Long, Integer> hashCountsA = getSubtreeHashCounts(treeA);
+        Map<Long, Integer> hashCountsB = getSubtreeHashCounts(treeB);
+        Map<Long, DiffTree<L>> nodesB = new HashMap<>();
+        for (int i = 0; i < treeB.getSubtreeSize(); i++)
+        {
+            DiffTree<L> nodeB = treeB.getNodeByPreorderNumber(i);
+            nodesB.put(nodeB.getSubtreeHash(), nodeB);
+        }
+
+        int i = 1;
+        while (i < treeA.getSubtreeSize())
+        {
+            DiffTree<L> nodeA = treeA.getNodeByPreorderNumber(i);
+            long hash = nodeA.getSubtreeHash();
+            if (!nodeA.getChildren().isEmpty() && hashCountsA.get(hash) == 1 && hashCountsB.getOrDefault(hash, 0) == 1)
+            {
+                DiffTree<L> nodeB = nodesB.get(hash);
+                if (!nodeA.isMatched() && !nodeB.isMatched() && nodeA.treeEquals(nodeB))
+                {
+                    nodeA.matchSubtree(nodeB);
+                    i += nodeA.getSubtreeSize();
+                    continue;
+                }
+            }
+            i++;
+        }
+    }
+
+    private static <L> Map<Long, Integer> getSubtreeHashCounts(DiffTree<L> tree)
+    {
+        Map<Long, Integer> hashCounts = new HashMap<>();
+        for (int i = 0; i < tree.getSubtreeSize(); i++)
+        {
+            hashCounts.merge(tree.getNodeByPreorderNumber(i).getSubtreeHash(), 1, Integer::sum);
+        }
+        return hashCounts;
     }
 
     /**
      * Performs the leaf matching step
+     * Leaves that are already matched (for example by {@link #matchIdenticalSubtrees}) are left out.
+     * With {@link MatchConfig#isMatchExactLeafTwins()}, leaves with a unique exact twin are matched first (see {@link #matchExactLeafTwins}).
+     * When there are more same label pairs of leaves than {@link MatchConfig#getMaxCandidatePairs()} or
+     * {@link MatchConfig#getMaxSimilarityCalls()} allow, leaves are only matched with leaves of equal value instead.
      * @param treeA The original tree.
      * @param treeB The modified tree
-     * @param stringSimilarityThreshold See STRING_SIMILARITY_THRESHOLD
-     * @param n See N.
+     * @param stringSimilarityThreshold See {@link MatchConfig#getStringSimilarityThreshold()}
+     * @param n See {@link MatchConfig#getN()}.
      * @param <L> Label type.
+     * @return How many pairs of leaves were scored, which counts against {@link MatchConfig#getMaxSimilarityCalls()}. Pairs
+     * an index leaves out are not counted.
+     */
+    <L> long matchLeafNodes(DiffTree<L> treeA, DiffTree<L> treeB, float stringSimilarityThreshold, int n)
+    {
+        return matchLeafNodes(treeA, treeB, stringSimilarityThreshold, n, NEVER_CANCELLED);
+    }
+
+    private <L> long matchLeafNodes(DiffTree<L> treeA, DiffTree<L> treeB, float stringSimilarityThreshold, int n, CancellationToken cancellationToken)
+    {
+        List<DiffTree<L>> leavesA = treeA.getLeaves().stream().filter(leaf -> !leaf.isMatched()).collect(Collectors.toList());
+        List<DiffTree<L>> leavesB = treeB.getLeaves().stream().filter(leaf -> !leaf.isMatched()).collect(Collectors.toList());
+        if (matchConfig.isMatchExactLeafTwins())
+        {
+            matchExactLeafTwins(leavesA, leavesB);
+            leavesA = leavesA.stream().filter(leaf -> !leaf.isMatched()).collect(Collectors.toList());
+            leavesB = leavesB.stream().filter(leaf -> !leaf.isMatched()).collect(Collectors.toList());
+        }
+
+        long candidatePairs = countCandidatePairs(leavesA, leavesB);
+        if (candidatePairs > getBudget(matchConfig.getMaxCandidatePairs()) || candidatePairs > getBudget(matchConfig.getMaxSimilarityCalls()))
+        {
+            matchLeavesWithEqualValues(leavesA, leavesB);
+            return 0;
+        }
+
+        ScoredLeafMatches scoredPotentialLeafMatches = scoreLeafMatches(leavesA, leavesB, stringSimilarityThreshold, n, cancellationToken);
+        matchLeafNodes(scoredPotentialLeafMatches, leavesA, leavesB);
+        return scoredPotentialLeafMatches.getScoredPairCount();
+    }
+
+    /**
+     * @return How many pairs of leaves have the same label.
      */
-    <L> void matchLeafNodes(DiffTree<L> treeA, DiffTree<L> treeB, float stringSimilarityThreshold, int n)
+    private static <L> long countCandidatePairs(List<DiffTree<L>> leavesA, List<DiffTree<L>> leavesB)
     {
-        List<DiffTree<L>> leavesA = treeA.getLeaves();
-        List<DiffTree<L>> leavesB = treeB.getLeaves();
+        Map<L, Long> leafCountsB = leavesB.stream().collect(Collectors.groupingBy(DiffTree::getLabel, Collectors.counting()));
+        long candidatePairs = 0;
+        for (DiffTree<L> leafA : leavesA)
+        {
+            candidatePairs += leafCountsB.getOrDefault(leafA.getLabel(), 0L);
+        }
+        return candidatePairs;
+    }
 
-        List<Pair<Pair<DiffTree<L>, DiffTree<L>>, Float>> scoredPotentialLeafMatches = scorePotentialLeafMatches(leavesA, leavesB, stringSimilarityThreshold, n);
-        matchLeafNodes(scoredPotentialLeafMatches);
+    /**
+     * Cheap leaf matching, for when scoring every pair would take too long. Every leaf of A, in order, is matched with
+     * the first unmatched leaf of B with the same label and value.
+     */
+    private static <L> void matchLeavesWithEqualValues(List<DiffTree<L>> leavesA, List<DiffTree<L>> leavesB)
+    {
+        Map<Pair<L, String>, LinkedList<DiffTree<L>>> leavesBByLabelAndValue = new HashMap<>();
+        for (DiffTree<L> leafB : leavesB)
+        {
+            leavesBByLabelAndValue.computeIfAbsent(new Pair<>(leafB.getLabel(), leafB.getValue()), key -> new LinkedList<>()).add(leafB);
+        }
+        for (DiffTree<L> leafA : leavesA)
+        {
+            LinkedList<DiffTree<L>> candidates = leavesBByLabelAndValue.get(new Pair<>(leafA.getLabel(), leafA.getValue()));
+            if (candidates != null && !candidates.isEmpty())
+            {
+                leafA.setMatch(candidates.removeFirst());
+            }
+        }
     }
 
     /**
      * Performs the inner node matching step.
+     * Every node of A is compared, in order, with the unmatched nodes of B that have the same label, and takes the first one that matches.
+     * With {@link InnerNodeMatchingMode#BOTTOM_UP}, and trees whose advanced data is populated, see {@link #matchInnerNodesBottomUp} instead.
      * @param treeA Original Tree.
      * @param treeB Modified Tree.
-     * @param stringSimilarityThreshold See STRING_SIMILARITY_THRESHOLD
-     * @param smallSubtreeSize See SMALL_SUBTREE_SIZE
-     * @param smallSubtreeSimilarityThreshold See SMALL_SUBTREE_SIMILARITY_THRESHOLD
-     * @param largeSubtreeSimilarityThreshold See LARGE_SUBTREE_SIMILARITY_THRESHOLD
-     * @param n See N.
+     * @param stringSimilarityThreshold See {@link MatchConfig#getStringSimilarityThreshold()}
+     * @param smallSubtreeSize See {@link MatchConfig#getSmallSubtreeSize()}
+     * @param smallSubtreeSimilarityThreshold See {@link MatchConfig#getSmallSubtreeSimilarityThreshold()}
+     * @param largeSubtreeSimilarityThreshold See {@link MatchConfig#getLargeSubtreeSimilarityThreshold()}
+     * @param n See {@link MatchConfig#getN()}.
      * @param <L> Label type.
      */
     <L> void matchInnerNodes(DiffTree<L> treeA,
@@ -106,30 +292,351 @@ public class ChangeDistillationTreeMatchImpl implements TreeMatch {
                                     float smallSubtreeSimilarityThreshold,
                                     float largeSubtreeSimilarityThreshold,
                                     int n) {
+        matchInnerNodes(treeA, treeB, stringSimilarityThreshold, smallSubtreeSize, smallSubtreeSimilarityThreshold, largeSubtreeSimilarityThreshold, n,
+                getBudget(matchConfig.getMaxSimilarityCalls()), NEVER_CANCELLED);
+    }
+
+    /**
+     * Same as {@link #matchInnerNodes(DiffTree, DiffTree, float, int, float, float, int)}, with a budget of inner node
+     * comparisons. Once it is spent, the remaining inner nodes are matched by position (see {@link #matchInnerNodesByPosition}).
+     * Once the token is cancelled, the remaining inner nodes are left unmatched.
+     */
+    private <L> void matchInnerNodes(DiffTree<L> treeA,
+                                     DiffTree<L> treeB,
+                                     float stringSimilarityThreshold,
+                                     int smallSubtreeSize,
+                                     float smallSubtreeSimilarityThreshold,
+                                     float largeSubtreeSimilarityThreshold,
+                                     int n,
+                                     long maximumSimilarityCalls,
+                                     CancellationToken cancellationToken) {
+        if (matchConfig.getInnerNodeMatchingMode() == InnerNodeMatchingMode.BOTTOM_UP && treeA.isNumbered() && treeB.isNumbered())
+        {
+            matchInnerNodesBottomUp(treeA, stringSimilarityThreshold, smallSubtreeSize, smallSubtreeSimilarityThreshold, largeSubtreeSimilarityThreshold, n, maximumSimilarityCalls, cancellationToken);
+            return;
+        }
+        matchInnerNodesFirstFit(treeA, treeB, stringSimilarityThreshold, smallSubtreeSize, smallSubtreeSimilarityThreshold, largeSubtreeSimilarityThreshold, n, maximumSimilarityCalls, cancellationToken);
+    }
+
+    private <L> void matchInnerNodesFirstFit(DiffTree<L> treeA,
+                                             DiffTree<L> treeB,
+                                             float stringSimilarityThreshold,
+                                             int smallSubtreeSize,
+                                             float smallSubtreeSimilarityThreshold,
+                                             float largeSubtreeSimilarityThreshold,
+                                             int n,
+                                             long maximumSimilarityCalls,
+                                             CancellationToken cancellationToken)
+    {
+        long similarityCalls = 0;
+        TreeEditDistance<L> treeEditDistance = getTreeEditDistance();
         List<DiffTree<L>> innerNodesA = treeA.getDescendants(false);
-        List<DiffTree<L>> innerNodesB = treeB.getDescendants(false);
+        Map<L, LinkedList<DiffTree<L>>> unmatchedInnerNodesBByLabel = getUnmatchedNodesByLabel(treeB.getDescendants(false));
 
         for (DiffTree<L> innerNodeA : innerNodesA)
         {
+            if (cancellationToken.isCancelled())
+            {
+                return;
+            }
             if (innerNodeA.isMatched())
             {
                 continue;
             }
-            for (DiffTree<L> innerNodeB : innerNodesB)
+            LinkedList<DiffTree<L>> candidates = unmatchedInnerNodesBByLabel.get(innerNodeA.getLabel());
+            if (candidates == null)
             {
+                continue;
+            }
+            Iterator<DiffTree<L>> iterator = candidates.iterator();
+            while (iterator.hasNext())
+            {
+                DiffTree<L> innerNodeB = iterator.next();
                 if (innerNodeB.isMatched())
                 {
+                    iterator.remove();
                     continue;
                 }
-                if (doInnerNodesMatch(innerNodeA, innerNodeB, stringSimilarityThreshold, smallSubtreeSize, smallSubtreeSimilarityThreshold, largeSubtreeSimilarityThreshold, n))
+                if (similarityCalls++ >= maximumSimilarityCalls)
+                {
+                    matchInnerNodesByPosition(treeA);
+                    return;
+                }
+                if (!Float.isNaN(scoreInnerNodeMatch(innerNodeA, innerNodeB, stringSimilarityThreshold, smallSubtreeSize, smallSubtreeSimilarityThreshold, largeSubtreeSimilarityThreshold, n, treeEditDistance)))
                 {
-                    innerNodeA.setMatch(innerNodeB);
+                    setInnerNodeMatch(innerNodeA, innerNodeB, stringSimilarityThreshold, n, treeEditDistance);
+                    iterator.remove();
                     break;
                 }
             }
         }
     }
 
+    /**
+     * Performs the inner node matching step from the bottom up.
+     * The inner nodes of A are visited in postorder, so that children are matched before their parents. The only
+     * candidates for a node are the unmatched, same label ancestors of the matches of its descendants, and it is matched
+     * with the candidate that has the best inner node similarity score (the first one found, on ties).
+     * @param treeA Original Tree, with advanced data populated.
+     * @param stringSimilarityThreshold See {@link MatchConfig#getStringSimilarityThreshold()}
+     * @param smallSubtreeSize See {@link MatchConfig#getSmallSubtreeSize()}
+     * @param smallSubtreeSimilarityThreshold See {@link MatchConfig#getSmallSubtreeSimilarityThreshold()}
+     * @param largeSubtreeSimilarityThreshold See {@link MatchConfig#getLargeSubtreeSimilarityThreshold()}
+     * @param n See {@link MatchConfig#getN()}.
+     * @param maximumSimilarityCalls How many candidates to score. Once they are all scored, the remaining inner nodes are matched by position.
+     * @param cancellationToken Checked before every node. Once it is cancelled, the remaining inner nodes are left unmatched.
+     * @param <L> Label type.
+     */
+    private <L> void matchInnerNodesBottomUp(DiffTree<L> treeA,
+                                             float stringSimilarityThreshold,
+                                             int smallSubtreeSize,
+                                             float smallSubtreeSimilarityThreshold,
+                                             float largeSubtreeSimilarityThreshold,
+                                             int n,
+                                             long maximumSimilarityCalls,
+                                             CancellationToken cancellationToken)
+    {
+        long similarityCalls = 0;
+        TreeEditDistance<L> treeEditDistance = getTreeEditDistance();
+        List<DiffTree<L>> nodesInPostorder = new ArrayList<>(Collections.nCopies(treeA.getSubtreeSize(), null));
+        for (int i = 0; i < treeA.getSubtreeSize(); i++)
+        {
+            DiffTree<L> node = treeA.getNodeByPreorderNumber(i);
+            nodesInPostorder.set(node.getPostorderNumber(), node);
+        }
+
+        for (DiffTree<L> innerNodeA : nodesInPostorder)
+        {
+            if (cancellationToken.isCancelled())
+            {
+                return;
+            }
+            if (innerNodeA == treeA || innerNodeA.isMatched() || innerNodeA.getChildren().isEmpty())
+            {
+                continue;
+            }
+            DiffTree<L> bestMatch = null;
+            float bestScore = 0;
+            for (DiffTree<L> innerNodeB : getBottomUpCandidates(innerNodeA))
+            {
+                if (similarityCalls++ >= maximumSimilarityCalls)
+                {
+                    matchInnerNodesByPosition(treeA);
+                    return;
+                }
+                float score = scoreInnerNodeMatch(innerNodeA, innerNodeB, stringSimilarityThreshold, smallSubtreeSize, smallSubtreeSimilarityThreshold, largeSubtreeSimilarityThreshold, n, treeEditDistance);
+                if (!Float.isNaN(score) && (bestMatch == null || score > bestScore))
+                {
+                    bestMatch = innerNodeB;
+                    bestScore = score;
+                }
+            }
+            if (bestMatch != null)
+            {
+                setInnerNodeMatch(innerNodeA, bestMatch, stringSimilarityThreshold, n, treeEditDistance);
+            }
+        }
+    }
+
+    /**
+     * @return A new {@link TreeEditDistance}, or null if {@link MatchConfig#getExactSubtreeMaximumSize()} turns it off.
+     */
+    private <L> TreeEditDistance<L> getTreeEditDistance()
+    {
+        return matchConfig.getExactSubtreeMaximumSize() > 0 ? new TreeEditDistance<>(matchConfig.getExactSubtreeMaximumSize()) : null;
+    }
+
+    /**
+     * Matches two inner nodes. If they are small enough to have been compared by tree edit distance, their unmatched
+     * descendants are also matched the way an optimal edit script maps them, except for leaves with different values
+     * that would not pass the leaf matching step's string similarity threshold.
+     * @param stringSimilarityThreshold See {@link MatchConfig#getStringSimilarityThreshold()}
+     * @param n See {@link MatchConfig#getN()}.
+     */
+    private <L> void setInnerNodeMatch(DiffTree<L> innerNodeA, DiffTree<L> innerNodeB, float stringSimilarityThreshold, int n, TreeEditDistance<L> treeEditDistance)
+    {
+        innerNodeA.setMatch(innerNodeB);
+        if (treeEditDistance != null && treeEditDistance.canCompare(innerNodeA, innerNodeB))
+        {
+            treeEditDistance.matchDescendants(innerNodeA, innerNodeB, (descendantA, descendantB) -> canMatchMappedNodes(descendantA, descendantB, stringSimilarityThreshold, n));
+        }
+    }
+
+    /**
+     * Tells whether two nodes that an edit script maps onto each other may be matched. Inner nodes and leaves with the
+     * same value may. Other leaves must be as similar as the leaf matching step requires.
+     * @param stringSimilarityThreshold See {@link MatchConfig#getStringSimilarityThreshold()}
+     * @param n See {@link MatchConfig#getN()}.
+     * @param <L> Label type
+     * @return Whether the nodes may be matched.
+     */
+    <L> boolean canMatchMappedNodes(DiffTree<L> nodeA, DiffTree<L> nodeB, float stringSimilarityThreshold, int n)
+    {
+        return !nodeA.getChildren().isEmpty()
+                || nodeA.hasSameValue(nodeB)
+                || stringSimilarity.getStringSimilarity(nodeA.getValueProfile(stringSimilarity, n), nodeB.getValueProfile(stringSimilarity, n), stringSimilarityThreshold) > stringSimilarityThreshold;
+    }
+
+    /**
+     * Cheap inner node matching, for when comparing inner nodes would take too long. Walking down from the root, an
+     * unmatched inner node whose parent is matched is matched with the child at the same position of the parent's match,
+     * if that child is an unmatched inner node with the same label.
+     * @param nodeA A node of A.
+     * @param <L> Label type.
+     */
+    private static <L> void matchInnerNodesByPosition(DiffTree<L> nodeA)
+    {
+        DiffTree<L> nodeB = nodeA.isMatched() ? nodeA.getMatch() : null;
+        for (int i = 0; i < nodeA.getChildren().size(); i++)
+        {
+            DiffTree<L> childA = nodeA.getChildren().get(i);
+            if (nodeB != null && !childA.isMatched() && !childA.getChildren().isEmpty() && i < nodeB.getChildren().size())
+            {
+                DiffTree<L> childB = nodeB.getChildren().get(i);
+                if (!childB.isMatched() && !childB.getChildren().isEmpty() && childA.hasSameLabel(childB))
+                {
+                    childA.setMatch(childB);
+                }
+            }
+            matchInnerNodesByPosition(childA);
+        }
+    }
+
+    /**
+     * Collects the unmatched ancestors of the matches of the descendants of a node, that have the same label as the node.
+     * @param innerNodeA A node of A, with advanced data populated.
+     * @param <L> Label type.
+     * @return The candidates, in the order they were found.
+     */
+    private <L> List<DiffTree<L>> getBottomUpCandidates(DiffTree<L> innerNodeA)
+    {
+        Set<DiffTree<L>> ancestors = new LinkedHashSet<>();
+        int last = innerNodeA.getPreorderNumber() + innerNodeA.getSubtreeSize() - 1;
+        for (int i = innerNodeA.getPreorderNumber() + 1; i <= last; i++)
+        {
+            DiffTree<L> descendant = innerNodeA.getNodeByPreorderNumber(i);
+            if (!descendant.isMatched() || !descendant.getMatch().isNumbered())
+            {
+                continue;
+            }
+            //Once an ancestor has been seen, so have all of its own ancestors.
+            DiffTree<L> ancestor = descendant.getMatch().getParent();
+            while (ancestor != null && ancestors.add(ancestor))
+            {
+                ancestor = ancestor.getParent();
+            }
+        }
+        return ancestors
+                .stream()
+                .filter(ancestor -> !ancestor.isMatched())
+                .filter(innerNodeA::hasSameLabel)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Buckets unmatched nodes by label, so that a node is only ever compared with nodes that have the same label.
+     * Every bucket keeps the nodes in the order they were given in.
+     * @param nodes The nodes to bucket.
+     * @param <L> Label type.
+     * @return The unmatched nodes, by label.
+     */
+    private <L> Map<L, LinkedList<DiffTree<L>>> getUnmatchedNodesByLabel(List<DiffTree<L>> nodes)
+    {
+        Map<L, LinkedList<DiffTree<L>>> nodesByLabel = new HashMap<>();
+        for (DiffTree<L> node : nodes)
+        {
+            if (!node.isMatched())
+            {
+                nodesByLabel.computeIfAbsent(node.getLabel(), label -> new LinkedList<>()).add(node);
+            }
+        }
+        return nodesByLabel;
+    }
+
+    /**
+     * Matches leaves that have an exact twin, with a hash join on (label, value, labels of every ancestor).
+     * Only keys that appear exactly once among the leaves of A and exactly once among the leaves of B are matched, so that
+     * repeated leaves (the same identifier used twice in one method, say) are still told apart by scoring.
+     * @param leavesA Unmatched leaves from tree a, with advanced data populated.
+     * @param leavesB Unmatched leaves from tree b, with advanced data populated.
+     * @param <L> Label type.
+     */
+    <L> void matchExactLeafTwins(List<DiffTree<L>> leavesA, List<DiffTree<L>> leavesB)
+    {
+        Map<LeafKey<L>, DiffTree<L>> uniqueLeavesB = new HashMap<>();
+        Set<LeafKey<L>> repeatedKeysB = new HashSet<>();
+        for (DiffTree<L> leafB : leavesB)
+        {
+            LeafKey<L> key = new LeafKey<>(leafB);
+            if (repeatedKeysB.contains(key) || uniqueLeavesB.put(key, leafB) != null)
+            {
+                uniqueLeavesB.remove(key);
+                repeatedKeysB.add(key);
+            }
+        }
+
+        Map<LeafKey<L>, DiffTree<L>> uniqueLeavesA = new LinkedHashMap<>();
+        Set<LeafKey<L>> repeatedKeysA = new HashSet<>();
+        for (DiffTree<L> leafA : leavesA)
+        {
+            LeafKey<L> key = new LeafKey<>(leafA);
+            if (!uniqueLeavesB.containsKey(key))
+            {
+                continue;
+            }
+            if (repeatedKeysA.contains(key) || uniqueLeavesA.put(key, leafA) != null)
+            {
+                uniqueLeavesA.remove(key);
+                repeatedKeysA.add(key);
+            }
+        }
+
+        for (Map.Entry<LeafKey<L>, DiffTree<L>> entry : uniqueLeavesA.entrySet())
+        {
+            entry.getValue().setMatch(uniqueLeavesB.get(entry.getKey()));
+        }
+    }
+
+    /**
+     * The label and value of a leaf, and the labels of all of its ancestors.
+     */
+    private static final class LeafKey<L> {
+        private final L label;
+        private final String value;
+        private final List<L> ancestorLabels = new ArrayList<>();
+        private final int hash;
+
+        LeafKey(DiffTree<L> leaf)
+        {
+            this.label = leaf.getLabel();
+            this.value = leaf.getValue();
+            for (DiffTree<L> ancestor = leaf.getParent(); ancestor != null; ancestor = ancestor.getParent())
+            {
+                ancestorLabels.add(ancestor.getLabel());
+            }
+            this.hash = Objects.hash(label, value, ancestorLabels);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+            {
+                return true;
+            }
+            if (!(o instanceof LeafKey))
+            {
+                return false;
+            }
+            LeafKey<?> other = (LeafKey<?>) o;
+            return hash == other.hash && label.equals(other.label) && value.equals(other.value) && ancestorLabels.equals(other.ancestorLabels);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
     /**
      * Matches leaf nodes to a best matching leaf node.
      * @param scoredPotentialMatches A list of potential matches with a corresponding score.
@@ -146,8 +653,30 @@ public class ChangeDistillationTreeMatchImpl implements TreeMatch {
                 .forEach(match -> match.a.setMatch(match.b));
     }
 
+    /**
+     * Matches leaf nodes to a best matching leaf node, from the highest score to the lowest.
+     * Same as {@link #matchLeafNodes(List)}, for scores kept in a {@link ScoredLeafMatches}.
+     * @param scoredPotentialMatches Potential matches with a corresponding score.
+     * @param leavesA The leaves of A the matches refer to.
+     * @param leavesB The leaves of B the matches refer to.
+     * @param <L> Label type
+     */
+    <L> void matchLeafNodes(ScoredLeafMatches scoredPotentialMatches, List<DiffTree<L>> leavesA, List<DiffTree<L>> leavesB)
+    {
+        for (int entry : scoredPotentialMatches.getOrderByScore())
+        {
+            DiffTree<L> leafA = leavesA.get(scoredPotentialMatches.getLeafA(entry));
+            DiffTree<L> leafB = leavesB.get(scoredPotentialMatches.getLeafB(entry));
+            if (!leafA.isMatched() && !leafB.isMatched())
+            {
+                leafA.setMatch(leafB);
+            }
+        }
+    }
+
     /**
      * Score potential matches of leaves.
+     * Same as {@link #scoreLeafMatches}, as a list of pairs.
      * @param leavesA Leaves from tree a
      * @param leavesB Leaves from tree b.
      * @param minimumSimilarity The minimum similarity between nodes to be considered a possibility
@@ -161,51 +690,283 @@ public class ChangeDistillationTreeMatchImpl implements TreeMatch {
             float minimumSimilarity,
             int n)
     {
-        List<Pair<Pair<DiffTree<L>, DiffTree<L>>, Float>> toReturn = new ArrayList<>();
-        for (DiffTree<L> leafA : leavesA)
+        ScoredLeafMatches scoredLeafMatches = scoreLeafMatches(leavesA, leavesB, minimumSimilarity, n);
+        List<Pair<Pair<DiffTree<L>, DiffTree<L>>, Float>> toReturn = new ArrayList<>(scoredLeafMatches.size());
+        for (int i = 0; i < scoredLeafMatches.size(); i++)
         {
-            for (DiffTree<L> leafB : leavesB)
-            {
-                if (leafA.getLabel().equals(leafB.getLabel())) {
-                    float similarity = stringSimilarity.getStringSimilarity(leafA.getValue(), leafB.getValue(), n);
-                    if (similarity > minimumSimilarity) {
-                        DiffTree<L> currentA = leafA;
-                        DiffTree<L> currentB = leafB;
-                        int parent_score = 0;
-                        for (int i = 0; i < 5; i++) {
-                            if (currentA == null || currentB == null) {
-                                if (currentA == currentB) {
-                                    parent_score += (5-i);
-                                }
-                                break;
-                            }
-                            if (currentA.getLabel().equals(currentB.getLabel())) {
-                                parent_score+=1;
-                                currentA = currentA.getParent();
-                                currentB = currentB.getParent();
-                            }
-                            else {
-                                break;
-                            }
-                        }
-                        toReturn.add(new Pair<>(new Pair<>(leafA, leafB), parent_score*similarity));
-                    }
+            DiffTree<L> leafA = leavesA.get(scoredLeafMatches.getLeafA(i));
+            DiffTree<L> leafB = leavesB.get(scoredLeafMatches.getLeafB(i));
+            toReturn.add(new Pair<>(new Pair<>(leafA, leafB), scoredLeafMatches.getScore(i)));
+        }
+        return toReturn;
+    }
+
+    /**
+     * Score potential matches of leaves.
+     * When every value has a packed profile, the leaves of B are indexed by label and n-gram, and only candidate pairs are scored.
+     * With {@link LeafMatchingMode#EXACT}, candidates are the pairs that can beat the minimum similarity (see {@link LeafCandidateIndex}).
+     * With {@link LeafMatchingMode#MIN_HASH}, candidates are the pairs sharing a MinHash bucket (see {@link MinHashLeafIndex}).
+     * Otherwise, every pair is scored.
+     * When {@link MatchConfig#getLeafScoringParallelism()} is more than 1, every label is scored as a separate task (see {@link #scoreLeafMatchesInParallel}).
+     * When {@link MatchConfig#getLeafCandidatesPerLeaf()} is more than 0, only that many of the best candidates of every leaf of A are kept.
+     * @param leavesA Leaves from tree a
+     * @param leavesB Leaves from tree b.
+     * @param minimumSimilarity The minimum similarity between nodes to be considered a possibility
+     * @param n The n in the n-grams for string similarity comparisons.
+     * @param <L> Label type
+     * @return The scored potential matches, by leaf of A and then by leaf of B.
+     */
+    <L> ScoredLeafMatches scoreLeafMatches(
+            List<DiffTree<L>> leavesA,
+            List<DiffTree<L>> leavesB,
+            float minimumSimilarity,
+            int n)
+    {
+        return scoreLeafMatches(leavesA, leavesB, minimumSimilarity, n, NEVER_CANCELLED);
+    }
+
+    /**
+     * Same as {@link #scoreLeafMatches(List, List, float, int)}, but stops scoring once the token is cancelled. The token
+     * is checked before every leaf of A.
+     */
+    private <L> ScoredLeafMatches scoreLeafMatches(
+            List<DiffTree<L>> leavesA,
+            List<DiffTree<L>> leavesB,
+            float minimumSimilarity,
+            int n,
+            CancellationToken cancellationToken)
+    {
+        List<NGramProfile> profilesA = leavesA.stream().map(leaf -> leaf.getValueProfile(stringSimilarity, n)).collect(Collectors.toList());
+        List<NGramProfile> profilesB = leavesB.stream().map(leaf -> leaf.getValueProfile(stringSimilarity, n)).collect(Collectors.toList());
+        boolean canUseIndex = minimumSimilarity >= 0
+                && profilesA.stream().allMatch(LeafCandidateIndex::canIndex)
+                && profilesB.stream().allMatch(LeafCandidateIndex::canIndex);
+        if (matchConfig.getLeafScoringParallelism() > 1)
+        {
+            return scoreLeafMatchesInParallel(leavesA, leavesB, minimumSimilarity, n, canUseIndex, cancellationToken);
+        }
+        return scoreLeafMatches(leavesA, leavesB, minimumSimilarity, n, canUseIndex, cancellationToken);
+    }
 
+    /**
+     * Same as {@link #scoreLeafMatches(List, List, float, int)}, once it has been decided whether to use an index.
+     * Profiles must already be cached on every leaf.
+     */
+    private <L> ScoredLeafMatches scoreLeafMatches(
+            List<DiffTree<L>> leavesA,
+            List<DiffTree<L>> leavesB,
+            float minimumSimilarity,
+            int n,
+            boolean useIndex,
+            CancellationToken cancellationToken)
+    {
+        ScoredLeafMatches toReturn = new ScoredLeafMatches();
+        int candidatesPerLeaf = matchConfig.getLeafCandidatesPerLeaf();
+        LeafCandidateGenerator<L> index = null;
+        if (useIndex)
+        {
+            List<NGramProfile> profilesB = leavesB.stream().map(leaf -> leaf.getValueProfile(stringSimilarity, n)).collect(Collectors.toList());
+            index = matchConfig.getLeafMatchingMode() == LeafMatchingMode.MIN_HASH
+                    ? new MinHashLeafIndex<>(leavesB, profilesB, matchConfig)
+                    : new LeafCandidateIndex<>(leavesB, profilesB);
+        }
+        for (int a = 0; a < leavesA.size() && !cancellationToken.isCancelled(); a++)
+        {
+            int firstEntry = toReturn.size();
+            DiffTree<L> leafA = leavesA.get(a);
+            if (index != null)
+            {
+                int leafAIndex = a;
+                index.forEachCandidate(leafA.getLabel(), leafA.getValueProfile(stringSimilarity, n), minimumSimilarity,
+                        b -> scorePotentialLeafMatch(leafA, leavesB.get(b), leafAIndex, b, minimumSimilarity, n, toReturn));
+            }
+            else
+            {
+                for (int b = 0; b < leavesB.size(); b++)
+                {
+                    DiffTree<L> leafB = leavesB.get(b);
+                    if (leafA.hasSameLabel(leafB)) {
+                        scorePotentialLeafMatch(leafA, leafB, a, b, minimumSimilarity, n, toReturn);
+                    }
                 }
             }
+            if (candidatesPerLeaf > 0)
+            {
+                toReturn.keepBest(firstEntry, candidatesPerLeaf);
+            }
+        }
+        return toReturn;
+    }
+
+    /**
+     * Scores potential matches of leaves, with one fork/join task per label, on the shared pool of
+     * {@link MatchConfig#getLeafScoringParallelism()} threads (see {@link ForkJoinPools#getShared}), so no threads are
+     * created per instance.
+     * Leaves only ever match leaves with the same label, so every label can be scored on its own. The results are put
+     * back in the order the sequential run produces (by leaf of A, then by leaf of B), so that matching them gives exactly
+     * the same result.
+     * @param leavesA Leaves from tree a, with cached profiles.
+     * @param leavesB Leaves from tree b, with cached profiles.
+     * @param minimumSimilarity The minimum similarity between nodes to be considered a possibility
+     * @param n The n in the n-grams for string similarity comparisons.
+     * @param useIndex Whether the leaves of B should be indexed.
+     * @param cancellationToken Checked by every task before every leaf of A.
+     * @param <L> Label type
+     * @return The scored potential matches, by leaf of A and then by leaf of B.
+     */
+    private <L> ScoredLeafMatches scoreLeafMatchesInParallel(
+            List<DiffTree<L>> leavesA,
+            List<DiffTree<L>> leavesB,
+            float minimumSimilarity,
+            int n,
+            boolean useIndex,
+            CancellationToken cancellationToken)
+    {
+        Map<L, List<Integer>> leavesAByLabel = getIndexesByLabel(leavesA);
+        Map<L, List<Integer>> leavesBByLabel = getIndexesByLabel(leavesB);
+        List<int[]> leafAIndexes = new ArrayList<>();
+        List<int[]> leafBIndexes = new ArrayList<>();
+        List<Callable<ScoredLeafMatches>> tasks = new ArrayList<>();
+        for (Map.Entry<L, List<Integer>> entry : leavesAByLabel.entrySet())
+        {
+            List<Integer> labelLeavesB = leavesBByLabel.get(entry.getKey());
+            if (labelLeavesB != null)
+            {
+                List<DiffTree<L>> subLeavesA = entry.getValue().stream().map(leavesA::get).collect(Collectors.toList());
+                List<DiffTree<L>> subLeavesB = labelLeavesB.stream().map(leavesB::get).collect(Collectors.toList());
+                leafAIndexes.add(entry.getValue().stream().mapToInt(Integer::intValue).toArray());
+                leafBIndexes.add(labelLeavesB.stream().mapToInt(Integer::intValue).toArray());
+                tasks.add(() -> scoreLeafMatches(subLeavesA, subLeavesB, minimumSimilarity, n, useIndex, cancellationToken));
+            }
         }
+
+        ScoredLeafMatches toReturn = new ScoredLeafMatches();
+        try
+        {
+            List<Future<ScoredLeafMatches>> results = ForkJoinPools.getShared(matchConfig.getLeafScoringParallelism()).invokeAll(tasks);
+            for (int i = 0; i < results.size(); i++)
+            {
+                toReturn.addAll(results.get(i).get(), leafAIndexes.get(i), leafBIndexes.get(i));
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while scoring leaves.", e);
+        }
+        catch (ExecutionException e)
+        {
+            throw new RuntimeException("Failed to score leaves.", e.getCause());
+        }
+        toReturn.sortByLeafA(leavesA.size());
         return toReturn;
     }
 
+    /**
+     * @return The indexes of the given nodes, by label, in order.
+     */
+    private static <L> Map<L, List<Integer>> getIndexesByLabel(List<DiffTree<L>> nodes)
+    {
+        Map<L, List<Integer>> indexesByLabel = new LinkedHashMap<>();
+        for (int i = 0; i < nodes.size(); i++)
+        {
+            indexesByLabel.computeIfAbsent(nodes.get(i).getLabel(), label -> new ArrayList<>()).add(i);
+        }
+        return indexesByLabel;
+    }
+
+    /**
+     * Scores a potential match of two leaves with the same label, using their string similarity and how many of their ancestors share labels.
+     * @param leafA Leaf from tree a.
+     * @param leafB Leaf from tree b.
+     * @param leafAIndex Index of leafA, as recorded in the scored matches.
+     * @param leafBIndex Index of leafB, as recorded in the scored matches.
+     * @param minimumSimilarity The minimum similarity between nodes to be considered a possibility
+     * @param n The n in the n-grams for string similarity comparisons.
+     * @param scoredPotentialMatches Where to add the scored match, if it is a possibility.
+     * @param <L> Label type
+     */
+    private <L> void scorePotentialLeafMatch(
+            DiffTree<L> leafA,
+            DiffTree<L> leafB,
+            int leafAIndex,
+            int leafBIndex,
+            float minimumSimilarity,
+            int n,
+            ScoredLeafMatches scoredPotentialMatches)
+    {
+        scoredPotentialMatches.countScoredPair();
+        float similarity = stringSimilarity.getStringSimilarity(leafA.getValueProfile(stringSimilarity, n), leafB.getValueProfile(stringSimilarity, n), minimumSimilarity);
+        if (similarity > minimumSimilarity) {
+            int[] labelIdsA = leafA.getAncestorLabelIds();
+            int[] labelIdsB = leafB.getAncestorLabelIds();
+            if (labelIdsA != null && labelIdsB != null && leafA.sharesSymbolTable(leafB))
+            {
+                scoredPotentialMatches.add(leafAIndex, leafBIndex, getParentScore(labelIdsA, labelIdsB)*similarity);
+                return;
+            }
+            DiffTree<L> currentA = leafA;
+            DiffTree<L> currentB = leafB;
+            int parent_score = 0;
+            for (int i = 0; i < DiffTree.ANCESTOR_LABEL_PATH_LENGTH; i++) {
+                if (currentA == null || currentB == null) {
+                    if (currentA == currentB) {
+                        parent_score += (DiffTree.ANCESTOR_LABEL_PATH_LENGTH-i);
+                    }
+                    break;
+                }
+                if (currentA.hasSameLabel(currentB)) {
+                    parent_score+=1;
+                    currentA = currentA.getParent();
+                    currentB = currentB.getParent();
+                }
+                else {
+                    break;
+                }
+            }
+            scoredPotentialMatches.add(leafAIndex, leafBIndex, parent_score*similarity);
+        }
+    }
+
+    /**
+     * Same parent score as the walk up the ancestors in {@link #scorePotentialLeafMatch}, from precomputed label paths
+     * (see {@link DiffTree#getAncestorLabelIds()}): one point for every level whose labels agree, counting up from the
+     * leaves, and every level left over if both paths reach their roots at the same time.
+     * @param labelIdsA Label path of the leaf from tree a.
+     * @param labelIdsB Label path of the leaf from tree b.
+     * @return The parent score.
+     */
+    private static int getParentScore(int[] labelIdsA, int[] labelIdsB)
+    {
+        int parentScore = 0;
+        for (int i = 0; i < DiffTree.ANCESTOR_LABEL_PATH_LENGTH; i++)
+        {
+            if (i == labelIdsA.length || i == labelIdsB.length)
+            {
+                if (labelIdsA.length == labelIdsB.length)
+                {
+                    parentScore += DiffTree.ANCESTOR_LABEL_PATH_LENGTH - i;
+                }
+                break;
+            }
+            if (labelIdsA[i] != labelIdsB[i])
+            {
+                break;
+            }
+            parentScore++;
+        }
+        return parentScore;
+    }
+
     /**
      * Tells whether two nodes match.
      * @param innerNodeA The original node
      * @param innerNodeB The modified node
-     * @param stringSimilarityThreshold See STRING_SIMILARITY_THRESHOLD
-     * @param smallSubtreeSize See SMALL_SUBTREE_SIZE
-     * @param smallSubtreeSimilarityThreshold See SMALL_SUBTREE_SIMILARITY_THRESHOLD
-     * @param largeSubtreeSimilarityThreshold See LARGE_SUBTREE_SIMILARITY_THRESHOLD
-     * @param n See N
+     * @param stringSimilarityThreshold See {@link MatchConfig#getStringSimilarityThreshold()}
+     * @param smallSubtreeSize See {@link MatchConfig#getSmallSubtreeSize()}
+     * @param smallSubtreeSimilarityThreshold See {@link MatchConfig#getSmallSubtreeSimilarityThreshold()}
+     * @param largeSubtreeSimilarityThreshold See {@link MatchConfig#getLargeSubtreeSimilarityThreshold()}
+     * @param n See {@link MatchConfig#getN()}.
      * @param <L> Label type
      * @return Whether the nodes match
      */
@@ -218,20 +979,91 @@ public class ChangeDistillationTreeMatchImpl implements TreeMatch {
             float largeSubtreeSimilarityThreshold,
             int n)
     {
-        if (!innerNodeA.getLabel().equals(innerNodeB.getLabel()))
+        return !Float.isNaN(scoreInnerNodeMatch(innerNodeA, innerNodeB, stringSimilarityThreshold, smallSubtreeSize, smallSubtreeSimilarityThreshold, largeSubtreeSimilarityThreshold, n, null));
+    }
+
+    /**
+     * Scores a potential match of two inner nodes.
+     * Parameters are the same as {@link #doInnerNodesMatch}.
+     * @param treeEditDistance If not null, subtrees it can compare are scored by their exact tree edit distance (see
+     *                         {@link TreeEditDistance#getSimilarity}) instead of by their common matches.
+     * @return The inner node similarity score if the nodes match, otherwise NaN.
+     */
+    private <L> float scoreInnerNodeMatch(
+            DiffTree<L> innerNodeA,
+            DiffTree<L> innerNodeB,
+            float stringSimilarityThreshold,
+            int smallSubtreeSize,
+            float smallSubtreeSimilarityThreshold,
+            float largeSubtreeSimilarityThreshold,
+            int n,
+            TreeEditDistance<L> treeEditDistance)
+    {
+        if (!innerNodeA.hasSameLabel(innerNodeB))
+        {
+            return Float.NaN;
+        }
+        boolean isExact = treeEditDistance != null && treeEditDistance.canCompare(innerNodeA, innerNodeB);
+        float exactThreshold = 0;
+        if (isExact)
+        {
+            //canInnerNodesMatch bounds the score from common matches, which an exact score does not depend on: subtrees
+            //without a single matched descendant can still be close in edit distance. Their sizes bound it instead.
+            int minSize = Math.min(treeEditDistance.countNodes(innerNodeA), treeEditDistance.countNodes(innerNodeB)) - 1;
+            exactThreshold = (minSize <= smallSubtreeSize ? smallSubtreeSimilarityThreshold : largeSubtreeSimilarityThreshold);
+            if (treeEditDistance.getSimilarityUpperBound(innerNodeA, innerNodeB) <= exactThreshold)
+            {
+                return Float.NaN;
+            }
+        }
+        else if (innerNodeA.isTrackingMatchedDescendants() && innerNodeB.isTrackingMatchedDescendants()
+                && !canInnerNodesMatch(innerNodeA, innerNodeB, smallSubtreeSize, smallSubtreeSimilarityThreshold, largeSubtreeSimilarityThreshold))
         {
-            return false;
+            return Float.NaN;
         }
-        if (stringSimilarity.getStringSimilarity(innerNodeA.getValue(), innerNodeB.getValue(), n) < stringSimilarityThreshold)
+        if (stringSimilarity.getStringSimilarity(innerNodeA.getValueProfile(stringSimilarity, n), innerNodeB.getValueProfile(stringSimilarity, n), stringSimilarityThreshold) < stringSimilarityThreshold)
         {
-            return false;
+            return Float.NaN;
+        }
+        if (isExact)
+        {
+            float similarity = treeEditDistance.getSimilarity(innerNodeA, innerNodeB);
+            return similarity > exactThreshold ? similarity : Float.NaN;
         }
         Pair<Float, Integer> result = innerNodeSimilarityScoreAndMinSize(innerNodeA, innerNodeB);
         float innerNodeSimilarityScore = result.a;
         int minSize = result.b;
 
         float t = (minSize <= smallSubtreeSize ? smallSubtreeSimilarityThreshold : largeSubtreeSimilarityThreshold);
-        return innerNodeSimilarityScore > t;
+        return innerNodeSimilarityScore > t ? innerNodeSimilarityScore : Float.NaN;
+    }
+
+    /**
+     * Tells whether two nodes could still match, using only their matched descendant counts.
+     * Two subtrees cannot have more common matches than the one with fewer matched descendants, which bounds the inner node
+     * similarity score from above without walking either subtree.
+     * @param innerNodeA The original node, whose tree tracks matched descendants.
+     * @param innerNodeB The modified node, whose tree tracks matched descendants.
+     * @param smallSubtreeSize See {@link MatchConfig#getSmallSubtreeSize()}
+     * @param smallSubtreeSimilarityThreshold See {@link MatchConfig#getSmallSubtreeSimilarityThreshold()}
+     * @param largeSubtreeSimilarityThreshold See {@link MatchConfig#getLargeSubtreeSimilarityThreshold()}
+     * @param <L> Label type
+     * @return False if the nodes can not match. True if they might.
+     */
+    private <L> boolean canInnerNodesMatch(
+            DiffTree<L> innerNodeA,
+            DiffTree<L> innerNodeB,
+            int smallSubtreeSize,
+            float smallSubtreeSimilarityThreshold,
+            float largeSubtreeSimilarityThreshold)
+    {
+        int descendantsInA = innerNodeA.getSubtreeSize() - 1;
+        int descendantsInB = innerNodeB.getSubtreeSize() - 1;
+        int maximumIntersectingNodes = Math.min(innerNodeA.getMatchedDescendantCount(), innerNodeB.getMatchedDescendantCount());
+        float maximumScore = (float) maximumIntersectingNodes/Math.max(descendantsInA, descendantsInB);
+        int minSize = Math.min(descendantsInA, descendantsInB);
+        float t = (minSize <= smallSubtreeSize ? smallSubtreeSimilarityThreshold : largeSubtreeSimilarityThreshold);
+        return maximumScore > t;
     }
 
     /**
@@ -256,6 +1088,10 @@ public class ChangeDistillationTreeMatchImpl implements TreeMatch {
      */
     <L> Pair<Float, Integer> innerNodeSimilarityScoreAndMinSize(DiffTree<L> innerNodeA, DiffTree<L> innerNodeB)
     {
+        if (innerNodeA.isNumbered() && innerNodeB.isNumbered())
+        {
+            return numberedInnerNodeSimilarityScoreAndMinSize(innerNodeA, innerNodeB);
+        }
         List<DiffTree<L>> allNodesInA = innerNodeA
                 .getDescendants(true);
         List<DiffTree<L>> allNodesInB = innerNodeB
@@ -266,10 +1102,87 @@ public class ChangeDistillationTreeMatchImpl implements TreeMatch {
                         .filter(DiffTree::isMatched)
                         .map(DiffTree::getMatch)
                         .collect(Collectors.toList());
-        int intersectingNodes = commonUtils.getIntersection(allMatchingNodesInA, allNodesInB).size();
+        int intersectingNodes = commonUtils.getIdentityIntersectionSize(allMatchingNodesInA, allNodesInB);
         int maximumNodes = Math.max(allNodesInA.size(), allNodesInB.size());
         float score = (float) intersectingNodes/maximumNodes;
         int minSize = Math.min(allNodesInA.size(), allNodesInB.size());
         return new Pair<>(score, minSize);
     }
+
+    /**
+     * Same as {@link #innerNodeSimilarityScoreAndMinSize}, for nodes that were numbered when advanced data was populated.
+     * Descendants are read straight from the preorder numbering, and whether a match lands under the other node is an
+     * interval check, so no lists are built. Only the smaller of the two subtrees is walked.
+     * @param innerNodeA The original node.
+     * @param innerNodeB The modified node
+     * @param <L> The label
+     * @return innerNodeSimilarityScore (first) and minimum tree size (second)
+     */
+    private <L> Pair<Float, Integer> numberedInnerNodeSimilarityScoreAndMinSize(DiffTree<L> innerNodeA, DiffTree<L> innerNodeB)
+    {
+        int descendantsInA = innerNodeA.getSubtreeSize() - 1;
+        int descendantsInB = innerNodeB.getSubtreeSize() - 1;
+        int intersectingNodes = descendantsInA <= descendantsInB
+                ? countMatchesInto(innerNodeA, innerNodeB)
+                : countMatchesFrom(innerNodeB, innerNodeA);
+        int maximumNodes = Math.max(descendantsInA, descendantsInB);
+        float score = (float) intersectingNodes/maximumNodes;
+        int minSize = Math.min(descendantsInA, descendantsInB);
+        return new Pair<>(score, minSize);
+    }
+
+    /**
+     * Counts the distinct descendants of innerNodeB that are the match of some descendant of innerNodeA, by walking innerNodeA.
+     */
+    private <L> int countMatchesInto(DiffTree<L> innerNodeA, DiffTree<L> innerNodeB)
+    {
+        //One bit per descendant of B, so that a descendant of B matched by more than one node is only counted once.
+        long[] counted = new long[(innerNodeB.getSubtreeSize() + 62) / 64];
+        int intersectingNodes = 0;
+        int last = innerNodeA.getPreorderNumber() + innerNodeA.getSubtreeSize() - 1;
+        for (int i = innerNodeA.getPreorderNumber() + 1; i <= last; i++)
+        {
+            DiffTree<L> descendant = innerNodeA.getNodeByPreorderNumber(i);
+            if (!descendant.isMatched())
+            {
+                continue;
+            }
+            DiffTree<L> match = descendant.getMatch();
+            if (match.isNumbered() && match.isDescendantOf(innerNodeB))
+            {
+                int bit = match.getPreorderNumber() - innerNodeB.getPreorderNumber() - 1;
+                if ((counted[bit >>> 6] & (1L << bit)) == 0)
+                {
+                    counted[bit >>> 6] |= 1L << bit;
+                    intersectingNodes++;
+                }
+            }
+        }
+        return intersectingNodes;
+    }
+
+    /**
+     * Counts the same thing as {@link #countMatchesInto}, but by walking innerNodeB.
+     * A descendant of B counts when its match is a descendant of A that is matched back to it. setMatch always matches
+     * both ways unless the other node was already matched, which the matcher never does, so both counts agree.
+     */
+    private <L> int countMatchesFrom(DiffTree<L> innerNodeB, DiffTree<L> innerNodeA)
+    {
+        int intersectingNodes = 0;
+        int last = innerNodeB.getPreorderNumber() + innerNodeB.getSubtreeSize() - 1;
+        for (int i = innerNodeB.getPreorderNumber() + 1; i <= last; i++)
+        {
+            DiffTree<L> descendant = innerNodeB.getNodeByPreorderNumber(i);
+            if (!descendant.isMatched())
+            {
+                continue;
+            }
+            DiffTree<L> match = descendant.getMatch();
+            if (match.getMatch() == descendant && match.isNumbered() && match.isDescendantOf(innerNodeA))
+            {
+                intersectingNodes++;
+            }
+        }
+        return intersectingNodes;
+    }
 }
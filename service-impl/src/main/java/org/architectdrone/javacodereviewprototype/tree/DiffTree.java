@@ -4,6 +4,7 @@ import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.function.UnaryOperator;
@@ -11,6 +12,9 @@ import java.util.stream.Collectors;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.Setter;
+import org.architectdrone.javacodereviewprototype.utils.common.Hashing;
+import org.architectdrone.javacodereviewprototype.utils.strings.NGramProfile;
+import org.architectdrone.javacodereviewprototype.utils.strings.StringSimilarity;
 
 import static org.architectdrone.javacodereviewprototype.tree.ReferenceType.MOVE_FROM;
 import static org.architectdrone.javacodereviewprototype.tree.ReferenceType.MOVE_TO;
@@ -33,13 +37,31 @@ public class DiffTree<L> {
     @Getter @Setter private DiffTree<L> previous;
     @Getter @Setter private DiffTree<L> first;
     @Setter private boolean hasAdvancedDataBeenPopulated;
+    //Numbering, taken when advanced data is populated. Nodes added to the tree afterwards are not numbered.
+    @Getter private int preorderNumber = -1; //Position of the node in a preorder walk of the whole tree.
+    @Getter private int postorderNumber = -1; //Position of the node in a postorder walk of the whole tree.
+    @Getter private int subtreeSize = -1; //Number of nodes in the subtree, including this node.
+    @Getter private long subtreeHash; //Hash of the labels, values and shape of the subtree. Equal subtrees have equal hashes.
+    private int[] ancestorLabelIds; //Label ids of this node and its closest ancestors. Only set for interned trees.
+    private DiffTree<L> root; //Root of the tree the node was numbered in.
+    private List<DiffTree<L>> preorderNodes; //Only set on the root. Every node, in preorder.
+    private boolean tracksMatchedDescendants; //Only set on the root. See trackMatchedDescendants.
+    @Getter private int matchedDescendantCount; //Number of matched strict descendants. Only kept up to date while tracked.
 
     //Container data
     @Getter
     final L label; //The label of the root node
-    @Getter @Setter
+    @Getter
     String value; //The value of the root node
-    
+    private NGramProfile valueProfile; //Cached n-grams of the value. See getValueProfile.
+
+    static final int ANCESTOR_LABEL_PATH_LENGTH = 5; //How many labels (this node's and its ancestors') are kept in ancestorLabelIds.
+
+    //Symbol data. Only set for trees built with a symbol table.
+    private SymbolTable<L> symbolTable;
+    @Getter private int labelId = -1;
+    @Getter private int valueId = -1;
+
     //Matching data
     @Getter
     private boolean isMatched = false; //Whether or not the root node is matched with a node from the other tree.
@@ -99,6 +121,80 @@ public class DiffTree<L> {
         return toReturn;
     }
 
+    /**
+     * Gives the label and value of this node their ids in a symbol table, and swaps the value for the table's shared instance.
+     * @param symbolTable The symbol table. Both trees of a diff should use the same one.
+     */
+    protected void intern(SymbolTable<L> symbolTable)
+    {
+        this.symbolTable = symbolTable;
+        this.labelId = symbolTable.getLabelId(label);
+        this.value = symbolTable.intern(value);
+        this.valueId = symbolTable.getValueId(value);
+    }
+
+    /**
+     * Sets the value. If the node was interned, the new value is interned in the same symbol table.
+     * @param value The new value.
+     */
+    public void setValue(String value)
+    {
+        if (symbolTable != null)
+        {
+            this.value = symbolTable.intern(value);
+            this.valueId = symbolTable.getValueId(value);
+        }
+        else
+        {
+            this.value = value;
+        }
+    }
+
+    /**
+     * Compares labels, by id if both nodes were interned in the same symbol table.
+     * @param otherTree The other node.
+     * @return Whether the labels are equal.
+     */
+    public boolean hasSameLabel(DiffTree<L> otherTree)
+    {
+        if (sharesSymbolTable(otherTree))
+        {
+            return labelId == otherTree.labelId;
+        }
+        return label.equals(otherTree.label);
+    }
+
+    /**
+     * Compares values, by id if both nodes were interned in the same symbol table.
+     * @param otherTree The other node.
+     * @return Whether the values are equal.
+     */
+    public boolean hasSameValue(DiffTree<L> otherTree)
+    {
+        if (sharesSymbolTable(otherTree))
+        {
+            return valueId == otherTree.valueId;
+        }
+        return value.equals(otherTree.value);
+    }
+
+    /**
+     * Gets the n-gram profile of the value, building it the first time it is needed.
+     * The profile is kept for as long as the value and n stay the same, so that a node compared against many other nodes
+     * is only n-grammed once.
+     * @param stringSimilarity Builds the profile.
+     * @param n The "n" in "n-gram"
+     * @return The profile of the value.
+     */
+    public NGramProfile getValueProfile(StringSimilarity stringSimilarity, int n)
+    {
+        if (valueProfile == null || valueProfile.getValue() != value || valueProfile.getN() != n)
+        {
+            valueProfile = stringSimilarity.getProfile(value, n);
+        }
+        return valueProfile;
+    }
+
     public List<DiffTree<L>> getChildren()
     {
         if (referenceType != MOVE_FROM)
@@ -114,6 +210,10 @@ public class DiffTree<L> {
     public void setMatch(DiffTree<L> match)
     {
         assert match.isOriginal() != this.isOriginal(); //We do not allow originals to match with other originals, or vice versa
+        if (!isMatched)
+        {
+            addToMatchedDescendantCounts(1);
+        }
         this.match = match;
         this.isMatched = true;
         if (!match.isMatched)
@@ -124,10 +224,75 @@ public class DiffTree<L> {
 
     public void unmatch()
     {
+        if (isMatched)
+        {
+            addToMatchedDescendantCounts(-1);
+        }
         this.match = null;
         this.isMatched = false;
     }
 
+    /**
+     * Matches every node of this subtree with the node in the same position of an identical subtree.
+     * Nodes that are already matched are left alone.
+     * @param twin The root of the identical subtree, from the other tree.
+     */
+    public void matchSubtree(DiffTree<L> twin)
+    {
+        if (!isMatched && !twin.isMatched)
+        {
+            setMatch(twin);
+        }
+        int childCount = Math.min(getChildren().size(), twin.getChildren().size());
+        for (int i = 0; i < childCount; i++)
+        {
+            getChildren().get(i).matchSubtree(twin.getChildren().get(i));
+        }
+    }
+
+    /**
+     * Starts keeping {@link #getMatchedDescendantCount()} up to date for every node of this tree.
+     * Counts are computed once from the current matches, and are then adjusted by {@link #setMatch} and {@link #unmatch()}
+     * by walking up the ancestors of the node. Must be called on the root, once advanced data is populated.
+     */
+    public void trackMatchedDescendants()
+    {
+        if (!isNumbered() || root != this)
+        {
+            throw new RuntimeException("Matched descendants can only be tracked from the root of a populated tree.");
+        }
+        for (int i = preorderNodes.size() - 1; i >= 0; i--)
+        {
+            DiffTree<L> node = preorderNodes.get(i);
+            node.matchedDescendantCount = 0;
+            for (DiffTree<L> child : node.getChildren())
+            {
+                node.matchedDescendantCount += child.matchedDescendantCount + (child.isMatched ? 1 : 0);
+            }
+        }
+        tracksMatchedDescendants = true;
+    }
+
+    /**
+     * @return Whether {@link #getMatchedDescendantCount()} is being kept up to date for this node.
+     */
+    public boolean isTrackingMatchedDescendants()
+    {
+        return root != null && root.tracksMatchedDescendants;
+    }
+
+    private void addToMatchedDescendantCounts(int change)
+    {
+        if (!isTrackingMatchedDescendants())
+        {
+            return;
+        }
+        for (DiffTree<L> ancestor = parent; ancestor != null; ancestor = ancestor.parent)
+        {
+            ancestor.matchedDescendantCount += change;
+        }
+    }
+
     public List<DiffTree<L>> getLeaves() {
         if (children.isEmpty())
         {
@@ -165,11 +330,11 @@ public class DiffTree<L> {
      */
     public boolean treeEquals(DiffTree<L> otherTree)
     {
-        if (!getLabel().equals(otherTree.getLabel()))
+        if (!hasSameLabel(otherTree))
         {
             return false;
         }
-        else if (!getValue().equals(otherTree.getValue()))
+        else if (!hasSameValue(otherTree))
         {
             return false;
         }
@@ -242,7 +407,9 @@ public class DiffTree<L> {
     }
 
     /**
-     * Populates advanced data (child number and parent)
+     * Populates advanced data (child number, parent, numbering, and subtree hashes)
+     * Every node gets its preorder and postorder number within this tree, and the size of its subtree. A node is then
+     * inside the subtree of another exactly when its preorder number falls in the other node's interval.
      */
     public void populateAdvancedData()
     {
@@ -250,6 +417,21 @@ public class DiffTree<L> {
         {
             throw new RuntimeException("Advanced tree data has already been populated.");
         }
+        preorderNodes = new ArrayList<>();
+        populateAdvancedData(this, new int[1]);
+    }
+
+    private void populateAdvancedData(DiffTree<L> root, int[] postorderCounter)
+    {
+        if (hasAdvancedDataBeenPopulated)
+        {
+            throw new RuntimeException("Advanced tree data has already been populated.");
+        }
+
+        this.root = root;
+        this.preorderNumber = root.preorderNodes.size();
+        this.ancestorLabelIds = computeAncestorLabelIds();
+        root.preorderNodes.add(this);
 
         if (getChildren().size() != 0)
         {
@@ -269,12 +451,119 @@ public class DiffTree<L> {
             }
 
             child.setParent(this);
-            child.populateAdvancedData();
+            child.populateAdvancedData(root, postorderCounter);
         }
 
+        this.subtreeSize = root.preorderNodes.size() - preorderNumber;
+        this.subtreeHash = computeSubtreeHash();
+        this.postorderNumber = postorderCounter[0]++;
         this.hasAdvancedDataBeenPopulated = true;
     }
 
+    /**
+     * Builds the label path of this node from its parent's: this node's label id, then the ids of up to
+     * ANCESTOR_LABEL_PATH_LENGTH - 1 ancestors. The path is shorter when the root is closer than that.
+     * @return The path, or null if the node was not interned.
+     */
+    private int[] computeAncestorLabelIds()
+    {
+        if (symbolTable == null)
+        {
+            return null;
+        }
+        int[] parentLabelIds = parent == null ? new int[0] : parent.ancestorLabelIds;
+        if (parentLabelIds == null)
+        {
+            return null;
+        }
+        int length = Math.min(ANCESTOR_LABEL_PATH_LENGTH, parentLabelIds.length + 1);
+        int[] labelIds = new int[length];
+        labelIds[0] = labelId;
+        System.arraycopy(parentLabelIds, 0, labelIds, 1, length - 1);
+        return labelIds;
+    }
+
+    /**
+     * Gets the label ids of this node and its closest ancestors, taken when advanced data was populated.
+     * Element 0 is this node's label id, element 1 its parent's, and so on. The array is shorter than
+     * ANCESTOR_LABEL_PATH_LENGTH when the root is closer than that. Must not be modified.
+     * @return The label ids, or null if the node was not interned or advanced data has not been populated.
+     */
+    int[] getAncestorLabelIds()
+    {
+        return ancestorLabelIds;
+    }
+
+    /**
+     * @param otherTree The other node.
+     * @return Whether both nodes were interned in the same symbol table, so that their ids can be compared.
+     */
+    boolean sharesSymbolTable(DiffTree<L> otherTree)
+    {
+        return symbolTable != null && symbolTable == otherTree.symbolTable;
+    }
+
+    /**
+     * Hashes the label and value of this node together with the hashes of its children, in order (a Merkle hash).
+     * Children must already have their hashes.
+     */
+    private long computeSubtreeHash()
+    {
+        long hash = Hashing.mix(Objects.hashCode(label)) * 31 + Hashing.mix(Objects.hashCode(value));
+        for (DiffTree<L> child : getChildren())
+        {
+            hash = Hashing.mix(hash) * 31 + child.subtreeHash;
+        }
+        return Hashing.mix(hash);
+    }
+
+    /**
+     * @return Whether advanced data has been populated for this node.
+     */
+    public boolean hasAdvancedDataBeenPopulated()
+    {
+        return hasAdvancedDataBeenPopulated;
+    }
+
+    /**
+     * @return Whether the node was numbered when advanced data was populated.
+     */
+    public boolean isNumbered()
+    {
+        return preorderNumber != -1;
+    }
+
+    /**
+     * Tells whether this node is a (strict) descendant of another, by comparing preorder numbers.
+     * @param ancestor The possible ancestor.
+     * @return Whether this node is inside the subtree of the ancestor, and is not the ancestor itself.
+     */
+    public boolean isDescendantOf(DiffTree<L> ancestor)
+    {
+        if (!isNumbered() || !ancestor.isNumbered())
+        {
+            throw new RuntimeException("Advanced tree data has not been populated yet.");
+        }
+        return root == ancestor.root
+                && preorderNumber > ancestor.preorderNumber
+                && preorderNumber < ancestor.preorderNumber + ancestor.subtreeSize;
+    }
+
+    /**
+     * Gets a node of the tree this node was numbered in.
+     * The descendants of this node are the nodes numbered preorderNumber + 1 to preorderNumber + subtreeSize - 1.
+     * @param preorderNumber The preorder number of the node.
+     * @return The node.
+     */
+    public DiffTree<L> getNodeByPreorderNumber(int preorderNumber)
+    {
+        if (!isNumbered())
+        {
+            throw new RuntimeException("Advanced tree data has not been populated yet.");
+        }
+        return root.preorderNodes.get(preorderNumber);
+    }
+
     /**
      * Gets all nodes on a given level of the tree.
      * @param level The level to get
@@ -0,0 +1,359 @@
+package org.architectdrone.javacodereviewprototype.tree;
+
+import com.github.javaparser.utils.Pair;
+import com.google.inject.Inject;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.BiPredicate;
+import java.util.stream.Collectors;
+
+/**
+ * Implements {@link TreeMatch} like GumTree does.
+ * <p>
+ * First, top down, the highest identical subtrees are matched node for node. A subtree with several identical twins is
+ * matched with the twin whose parent is most similar to its own parent. Then, bottom up, every unmatched inner node is
+ * matched with the unmatched node of the same label that shares the most matched descendants with it, and the
+ * descendants of small pairs are matched in a recovery step.
+ * <p>
+ * Unlike Change Distilling, leaves are never compared to every other leaf, so the work grows with the size of the trees
+ * times their height rather than with the square of the number of leaves.
+ * @see <a href="https://hal.archives-ouvertes.fr/hal-01054552">Fine-grained and Accurate Source Code Differencing</a>
+ */
+public class GumTreeTreeMatchImpl implements TreeMatch {
+    final MatchConfig matchConfig;
+
+    public GumTreeTreeMatchImpl()
+    {
+        this(MatchConfig.DEFAULT);
+    }
+
+    @Inject
+    public GumTreeTreeMatchImpl(MatchConfig matchConfig)
+    {
+        this.matchConfig = matchConfig;
+    }
+
+    /**{@inheritDoc} */
+    @Override
+    public <L> void matchTrees(DiffTree<L> treeA, DiffTree<L> treeB) {
+        if (!treeA.hasAdvancedDataBeenPopulated())
+        {
+            treeA.populateAdvancedData();
+        }
+        if (!treeB.hasAdvancedDataBeenPopulated())
+        {
+            treeB.populateAdvancedData();
+        }
+        matchSubtrees(treeA, treeB);
+    }
+
+    /**
+     * {@inheritDoc}
+     * The whole trees must have their advanced data populated.
+     */
+    @Override
+    public <L> void matchSubtrees(DiffTree<L> subtreeA, DiffTree<L> subtreeB) {
+        subtreeA.setMatch(subtreeB);
+        matchTopDown(subtreeA, subtreeB);
+        matchBottomUp(subtreeA, subtreeB);
+    }
+
+    /**
+     * Matches identical subtrees, highest first. Subtrees lower than {@link MatchConfig#getGumTreeMinHeight()} are left
+     * to the bottom up step. When a subtree has a single identical twin, they are matched right away. Otherwise, every
+     * pair of twins is a candidate, and candidates are matched by how similar their parents are.
+     * @param subtreeA Subtree of the original tree.
+     * @param subtreeB Subtree of the modified tree.
+     * @param <L> Label type.
+     */
+    <L> void matchTopDown(DiffTree<L> subtreeA, DiffTree<L> subtreeB)
+    {
+        Map<DiffTree<L>, Integer> heights = new HashMap<>();
+        computeHeights(subtreeA, heights);
+        computeHeights(subtreeB, heights);
+        PriorityQueue<DiffTree<L>> queueA = new PriorityQueue<>((x, y) -> heights.get(y) - heights.get(x));
+        PriorityQueue<DiffTree<L>> queueB = new PriorityQueue<>((x, y) -> heights.get(y) - heights.get(x));
+        queueA.addAll(subtreeA.getChildren());
+        queueB.addAll(subtreeB.getChildren());
+        List<Pair<DiffTree<L>, DiffTree<L>>> candidates = new ArrayList<>();
+        int minHeight = matchConfig.getGumTreeMinHeight();
+
+        while (!queueA.isEmpty() && !queueB.isEmpty())
+        {
+            int heightA = heights.get(queueA.peek());
+            int heightB = heights.get(queueB.peek());
+            if (Math.max(heightA, heightB) < minHeight)
+            {
+                break;
+            }
+            if (heightA != heightB)
+            {
+                open(heightA > heightB ? queueA : queueB, heightA > heightB ? queueA.poll() : queueB.poll());
+                continue;
+            }
+            List<DiffTree<L>> nodesA = pollHeight(queueA, heights, heightA);
+            List<DiffTree<L>> nodesB = pollHeight(queueB, heights, heightB);
+            Map<Long, Long> hashCountsA = nodesA.stream().collect(Collectors.groupingBy(DiffTree::getSubtreeHash, Collectors.counting()));
+            Map<Long, Long> hashCountsB = nodesB.stream().collect(Collectors.groupingBy(DiffTree::getSubtreeHash, Collectors.counting()));
+            Set<DiffTree<L>> paired = Collections.newSetFromMap(new HashMap<>());
+            for (DiffTree<L> nodeA : nodesA)
+            {
+                for (DiffTree<L> nodeB : nodesB)
+                {
+                    if (nodeA.isMatched() || nodeB.isMatched() || !isIsomorphic(nodeA, nodeB))
+                    {
+                        continue;
+                    }
+                    paired.add(nodeA);
+                    paired.add(nodeB);
+                    if (hashCountsA.get(nodeA.getSubtreeHash()) == 1 && hashCountsB.get(nodeB.getSubtreeHash()) == 1)
+                    {
+                        nodeA.matchSubtree(nodeB);
+                    }
+                    else
+                    {
+                        candidates.add(new Pair<>(nodeA, nodeB));
+                    }
+                }
+            }
+            nodesA.stream().filter(node -> !paired.contains(node)).forEach(node -> open(queueA, node));
+            nodesB.stream().filter(node -> !paired.contains(node)).forEach(node -> open(queueB, node));
+        }
+
+        List<Pair<DiffTree<L>, DiffTree<L>>> sortedCandidates = new ArrayList<>(candidates);
+        Map<Pair<DiffTree<L>, DiffTree<L>>, Float> parentDice = new HashMap<>();
+        for (Pair<DiffTree<L>, DiffTree<L>> candidate : candidates)
+        {
+            DiffTree<L> parentA = candidate.a.getParent();
+            DiffTree<L> parentB = candidate.b.getParent();
+            parentDice.put(candidate, parentA == null || parentB == null ? 0 : getDice(parentA, parentB));
+        }
+        sortedCandidates.sort((x, y) -> Float.compare(parentDice.get(y), parentDice.get(x)));
+        for (Pair<DiffTree<L>, DiffTree<L>> candidate : sortedCandidates)
+        {
+            if (!candidate.a.isMatched() && !candidate.b.isMatched())
+            {
+                candidate.a.matchSubtree(candidate.b);
+            }
+        }
+    }
+
+    /**
+     * Matches the unmatched inner nodes of A, children first, with the unmatched node of B with the same label that
+     * shares the most matched descendants with it, if their dice score reaches {@link MatchConfig#getGumTreeMinDice()}.
+     * The descendants of every new pair, and of the roots, then go through {@link #recover}.
+     * @param subtreeA Subtree of the original tree.
+     * @param subtreeB Subtree of the modified tree.
+     * @param <L> Label type.
+     */
+    <L> void matchBottomUp(DiffTree<L> subtreeA, DiffTree<L> subtreeB)
+    {
+        List<DiffTree<L>> nodesInPostorder = new ArrayList<>(subtreeA.getSubtreeSize());
+        addInPostorder(subtreeA, nodesInPostorder);
+        for (DiffTree<L> nodeA : nodesInPostorder)
+        {
+            if (nodeA == subtreeA || nodeA.isMatched() || nodeA.getChildren().isEmpty())
+            {
+                continue;
+            }
+            DiffTree<L> bestMatch = null;
+            float bestDice = 0;
+            for (DiffTree<L> nodeB : getCandidates(nodeA, subtreeB))
+            {
+                float dice = getDice(nodeA, nodeB);
+                if (bestMatch == null || dice > bestDice)
+                {
+                    bestMatch = nodeB;
+                    bestDice = dice;
+                }
+            }
+            if (bestMatch != null && bestDice >= matchConfig.getGumTreeMinDice())
+            {
+                nodeA.setMatch(bestMatch);
+                recover(nodeA, bestMatch);
+            }
+        }
+        recover(subtreeA, subtreeB);
+    }
+
+    /**
+     * @return The unmatched ancestors, within subtreeB, of the matches of the descendants of nodeA, that have the same
+     * label as nodeA, in the order they were found.
+     */
+    private static <L> Set<DiffTree<L>> getCandidates(DiffTree<L> nodeA, DiffTree<L> subtreeB)
+    {
+        Set<DiffTree<L>> candidates = new LinkedHashSet<>();
+        int last = nodeA.getPreorderNumber() + nodeA.getSubtreeSize() - 1;
+        for (int i = nodeA.getPreorderNumber() + 1; i <= last; i++)
+        {
+            DiffTree<L> descendant = nodeA.getNodeByPreorderNumber(i);
+            if (!descendant.isMatched() || !descendant.getMatch().isNumbered() || !descendant.getMatch().isDescendantOf(subtreeB))
+            {
+                continue;
+            }
+            for (DiffTree<L> ancestor = descendant.getMatch().getParent(); ancestor != subtreeB; ancestor = ancestor.getParent())
+            {
+                if (!ancestor.isMatched() && ancestor.hasSameLabel(nodeA))
+                {
+                    candidates.add(ancestor);
+                }
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Matches the unmatched children of two matched nodes, when both subtrees are smaller than
+     * {@link MatchConfig#getGumTreeMaxRecoverySize()}: first the longest common subsequence of identical children,
+     * then the longest common subsequence of children with the same label, and then the children whose label is unique
+     * among the unmatched children on both sides. Children matched in the last two steps are recovered in turn.
+     * @param nodeA A node of A.
+     * @param nodeB The match of nodeA.
+     * @param <L> Label type.
+     */
+    <L> void recover(DiffTree<L> nodeA, DiffTree<L> nodeB)
+    {
+        int maxSize = matchConfig.getGumTreeMaxRecoverySize();
+        if (nodeA.getSubtreeSize() >= maxSize || nodeB.getSubtreeSize() >= maxSize)
+        {
+            return;
+        }
+        for (Pair<DiffTree<L>, DiffTree<L>> pair : getLongestCommonSubsequence(getUnmatchedChildren(nodeA), getUnmatchedChildren(nodeB), GumTreeTreeMatchImpl::isIsomorphic))
+        {
+            pair.a.matchSubtree(pair.b);
+        }
+        for (Pair<DiffTree<L>, DiffTree<L>> pair : getLongestCommonSubsequence(getUnmatchedChildren(nodeA), getUnmatchedChildren(nodeB), DiffTree::hasSameLabel))
+        {
+            pair.a.setMatch(pair.b);
+            recover(pair.a, pair.b);
+        }
+        Map<L, List<DiffTree<L>>> childrenA = getUnmatchedChildren(nodeA).stream().collect(Collectors.groupingBy(DiffTree::getLabel));
+        Map<L, List<DiffTree<L>>> childrenB = getUnmatchedChildren(nodeB).stream().collect(Collectors.groupingBy(DiffTree::getLabel));
+        for (DiffTree<L> childA : getUnmatchedChildren(nodeA))
+        {
+            List<DiffTree<L>> sameLabelA = childrenA.get(childA.getLabel());
+            List<DiffTree<L>> sameLabelB = childrenB.get(childA.getLabel());
+            if (sameLabelA.size() == 1 && sameLabelB != null && sameLabelB.size() == 1)
+            {
+                childA.setMatch(sameLabelB.get(0));
+                recover(childA, sameLabelB.get(0));
+            }
+        }
+    }
+
+    private static <L> List<DiffTree<L>> getUnmatchedChildren(DiffTree<L> node)
+    {
+        return node.getChildren().stream().filter(child -> !child.isMatched()).collect(Collectors.toList());
+    }
+
+    /**
+     * @return The pairs of a longest common subsequence of the two lists, in order.
+     */
+    private static <L> List<Pair<DiffTree<L>, DiffTree<L>>> getLongestCommonSubsequence(List<DiffTree<L>> a, List<DiffTree<L>> b, BiPredicate<DiffTree<L>, DiffTree<L>> areEqual)
+    {
+        int[][] lengths = new int[a.size() + 1][b.size() + 1];
+        for (int i = a.size() - 1; i >= 0; i--)
+        {
+            for (int j = b.size() - 1; j >= 0; j--)
+            {
+                lengths[i][j] = areEqual.test(a.get(i), b.get(j))
+                        ? lengths[i + 1][j + 1] + 1
+                        : Math.max(lengths[i + 1][j], lengths[i][j + 1]);
+            }
+        }
+        List<Pair<DiffTree<L>, DiffTree<L>>> pairs = new ArrayList<>();
+        int i = 0;
+        int j = 0;
+        while (i < a.size() && j < b.size())
+        {
+            if (areEqual.test(a.get(i), b.get(j)))
+            {
+                pairs.add(new Pair<>(a.get(i), b.get(j)));
+                i++;
+                j++;
+            }
+            else if (lengths[i + 1][j] >= lengths[i][j + 1])
+            {
+                i++;
+            }
+            else
+            {
+                j++;
+            }
+        }
+        return pairs;
+    }
+
+    /**
+     * Dice coefficient of the matched descendants of two nodes: twice the number of descendants of nodeA that are matched
+     * with descendants of nodeB, over the number of descendants of both.
+     */
+    private static <L> float getDice(DiffTree<L> nodeA, DiffTree<L> nodeB)
+    {
+        int descendants = nodeA.getSubtreeSize() - 1 + nodeB.getSubtreeSize() - 1;
+        if (descendants == 0)
+        {
+            return 0;
+        }
+        int common = 0;
+        int last = nodeA.getPreorderNumber() + nodeA.getSubtreeSize() - 1;
+        for (int i = nodeA.getPreorderNumber() + 1; i <= last; i++)
+        {
+            DiffTree<L> descendant = nodeA.getNodeByPreorderNumber(i);
+            if (descendant.isMatched() && descendant.getMatch().isNumbered() && descendant.getMatch().isDescendantOf(nodeB))
+            {
+                common++;
+            }
+        }
+        return (float) 2 * common / descendants;
+    }
+
+    private static <L> boolean isIsomorphic(DiffTree<L> nodeA, DiffTree<L> nodeB)
+    {
+        return nodeA.getSubtreeHash() == nodeB.getSubtreeHash() && nodeA.treeEquals(nodeB);
+    }
+
+    /**
+     * Computes the height of every node of a subtree. Leaves have a height of 1.
+     */
+    private static <L> int computeHeights(DiffTree<L> node, Map<DiffTree<L>, Integer> heights)
+    {
+        int height = 1;
+        for (DiffTree<L> child : node.getChildren())
+        {
+            height = Math.max(height, computeHeights(child, heights) + 1);
+        }
+        heights.put(node, height);
+        return height;
+    }
+
+    private static <L> void open(PriorityQueue<DiffTree<L>> queue, DiffTree<L> node)
+    {
+        queue.addAll(node.getChildren());
+    }
+
+    private static <L> List<DiffTree<L>> pollHeight(PriorityQueue<DiffTree<L>> queue, Map<DiffTree<L>, Integer> heights, int height)
+    {
+        List<DiffTree<L>> nodes = new ArrayList<>();
+        while (!queue.isEmpty() && heights.get(queue.peek()) == height)
+        {
+            nodes.add(queue.poll());
+        }
+        return nodes;
+    }
+
+    private static <L> void addInPostorder(DiffTree<L> node, List<DiffTree<L>> nodes)
+    {
+        for (DiffTree<L> child : node.getChildren())
+        {
+            addInPostorder(child, nodes);
+        }
+        nodes.add(node);
+    }
+}
@@ -0,0 +1,18 @@
+package org.architectdrone.javacodereviewprototype.tree;
+
+/**
+ * How inner nodes find their partners.
+ */
+public enum InnerNodeMatchingMode {
+    /**
+     * Every inner node of A is compared with the unmatched inner nodes of B that have the same label, and takes the
+     * first one that matches. This is the Change Distilling approach.
+     */
+    FIRST_FIT,
+    /**
+     * Every inner node of A, from the bottom up, is only compared with the ancestors of the matches of its descendants,
+     * and takes the one with the best inner node similarity score. Like the bottom-up phase of GumTree, the work grows
+     * with how much the trees overlap rather than with their size. Nodes with no matched descendants are left unmatched.
+     */
+    BOTTOM_UP
+}
@@ -0,0 +1,19 @@
+package org.architectdrone.javacodereviewprototype.tree;
+
+import java.util.function.IntConsumer;
+import org.architectdrone.javacodereviewprototype.utils.strings.NGramProfile;
+
+/**
+ * Picks which leaves of one tree are worth scoring against a leaf of the other tree.
+ * @param <L> The label type
+ */
+interface LeafCandidateGenerator<L> {
+    /**
+     * Finds the candidate partners of a leaf, in the order the candidates were given to the generator.
+     * @param label The label of the leaf.
+     * @param profile Packed profile of the value of the leaf.
+     * @param minimumSimilarity The minimum similarity for a pair to be considered a possibility.
+     * @param candidateConsumer Receives the position of every candidate.
+     */
+    void forEachCandidate(L label, NGramProfile profile, float minimumSimilarity, IntConsumer candidateConsumer);
+}
@@ -0,0 +1,169 @@
+package org.architectdrone.javacodereviewprototype.tree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+import org.architectdrone.javacodereviewprototype.utils.strings.NGramProfile;
+
+/**
+ * Inverted index from (label, n-gram) to the leaves of a tree that contain it.
+ * <p>
+ * Two leaves that share no n-gram have a similarity of 0, and the number of n-grams they do share is enough to compute
+ * their exact n-gram similarity. So instead of scoring every leaf of A against every leaf of B, we count shared n-grams
+ * through the index, and only hand out the leaves of B that can still beat the minimum similarity.
+ * <p>
+ * Only works with packed profiles (see {@link NGramProfile#isPacked()}), whose similarity is the plain n-gram similarity.
+ * @param <L> The label type
+ */
+class LeafCandidateIndex<L> implements LeafCandidateGenerator<L> {
+    private final Map<L, LabelIndex> labelIndexes = new HashMap<>();
+    private final int[] sizes; //Number of distinct n-grams of every indexed leaf.
+    private final int[] sharedNGrams; //Scratch: shared n-grams per indexed leaf, for the leaf being looked up.
+    private int[] touched; //Scratch: indexed leaves sharing at least one n-gram with the leaf being looked up.
+
+    /**
+     * Indexes leaves.
+     * @param leaves The leaves to index.
+     * @param profiles Packed profile of the value of every leaf, in the same order.
+     */
+    LeafCandidateIndex(List<DiffTree<L>> leaves, List<NGramProfile> profiles)
+    {
+        sizes = new int[leaves.size()];
+        sharedNGrams = new int[leaves.size()];
+        touched = new int[16];
+
+        Map<L, List<Integer>> leavesByLabel = new HashMap<>();
+        for (int i = 0; i < leaves.size(); i++) {
+            sizes[i] = profiles.get(i).size();
+            leavesByLabel.computeIfAbsent(leaves.get(i).getLabel(), l -> new ArrayList<>()).add(i);
+        }
+        for (Map.Entry<L, List<Integer>> entry : leavesByLabel.entrySet())
+        {
+            labelIndexes.put(entry.getKey(), new LabelIndex(entry.getValue(), profiles));
+        }
+    }
+
+    /**
+     * @param profile A packed profile.
+     * @return Whether the profile can be looked up in an index.
+     */
+    static boolean canIndex(NGramProfile profile)
+    {
+        return profile.isPacked();
+    }
+
+    /**
+     * Finds every indexed leaf with the given label whose similarity to the given profile is greater than the minimum.
+     * Candidates are handed out in the order they were indexed in.
+     * @param label The label of the leaf being looked up.
+     * @param profile Packed profile of the value of the leaf being looked up.
+     * @param minimumSimilarity Leaves whose similarity is not greater than this are left out.
+     * @param candidateConsumer Receives the position of every candidate in the indexed list.
+     */
+    @Override
+    public void forEachCandidate(L label, NGramProfile profile, float minimumSimilarity, IntConsumer candidateConsumer)
+    {
+        LabelIndex labelIndex = labelIndexes.get(label);
+        if (labelIndex == null)
+        {
+            return;
+        }
+
+        int touchedCount = 0;
+        for (long nGram : profile.getPackedNGrams())
+        {
+            int position = Arrays.binarySearch(labelIndex.nGrams, nGram);
+            if (position < 0)
+            {
+                continue;
+            }
+            for (int p = labelIndex.offsets[position]; p < labelIndex.offsets[position + 1]; p++) {
+                int leaf = labelIndex.postings[p];
+                if (sharedNGrams[leaf]++ == 0)
+                {
+                    if (touchedCount == touched.length)
+                    {
+                        touched = Arrays.copyOf(touched, touchedCount * 2);
+                    }
+                    touched[touchedCount++] = leaf;
+                }
+            }
+        }
+
+        Arrays.sort(touched, 0, touchedCount);
+        for (int t = 0; t < touchedCount; t++) {
+            int leaf = touched[t];
+            int intersection = sharedNGrams[leaf];
+            sharedNGrams[leaf] = 0;
+            float similarity = (float) (2 * intersection) / (profile.size() + sizes[leaf] - intersection);
+            if (similarity > minimumSimilarity)
+            {
+                candidateConsumer.accept(leaf);
+            }
+        }
+    }
+
+    /**
+     * Postings of the leaves sharing one label: for every distinct n-gram, the sorted positions of the leaves containing it.
+     */
+    private static final class LabelIndex {
+        private final long[] nGrams; //Sorted, distinct.
+        private final int[] offsets; //Postings of nGrams[i] are postings[offsets[i]] until postings[offsets[i+1]].
+        private final int[] postings;
+
+        LabelIndex(List<Integer> leaves, List<NGramProfile> profiles)
+        {
+            int total = 0;
+            for (int leaf : leaves)
+            {
+                total += profiles.get(leaf).size();
+            }
+
+            //Distinct n-grams of all the leaves.
+            long[] allNGrams = new long[total];
+            int e = 0;
+            for (int leaf : leaves)
+            {
+                for (long nGram : profiles.get(leaf).getPackedNGrams())
+                {
+                    allNGrams[e++] = nGram;
+                }
+            }
+            Arrays.sort(allNGrams);
+            int distinct = 0;
+            for (int i = 0; i < total; i++) {
+                if (distinct == 0 || allNGrams[distinct - 1] != allNGrams[i])
+                {
+                    allNGrams[distinct++] = allNGrams[i];
+                }
+            }
+            nGrams = Arrays.copyOf(allNGrams, distinct);
+
+            //Count the postings of every n-gram, then fill them in leaf order, so that every posting list is sorted.
+            offsets = new int[distinct + 1];
+            for (int leaf : leaves)
+            {
+                for (long nGram : profiles.get(leaf).getPackedNGrams())
+                {
+                    offsets[Arrays.binarySearch(nGrams, nGram) + 1]++;
+                }
+            }
+            for (int i = 0; i < distinct; i++) {
+                offsets[i + 1] += offsets[i];
+            }
+            postings = new int[total];
+            int[] filled = new int[distinct];
+            for (int leaf : leaves)
+            {
+                for (long nGram : profiles.get(leaf).getPackedNGrams())
+                {
+                    int position = Arrays.binarySearch(nGrams, nGram);
+                    postings[offsets[position] + filled[position]++] = leaf;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package org.architectdrone.javacodereviewprototype.tree;
+
+/**
+ * How leaves are paired up before they are scored.
+ */
+public enum LeafMatchingMode {
+    /**
+     * Every pair of leaves that could beat the string similarity threshold is scored.
+     */
+    EXACT,
+    /**
+     * Leaves are bucketed by MinHash signatures of their n-grams, and only leaves sharing a bucket are scored.
+     * Much faster on very large trees, but some matches may be missed.
+     */
+    MIN_HASH
+}
@@ -0,0 +1,85 @@
+package org.architectdrone.javacodereviewprototype.tree;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Settings for the {@link TreeMatch} implementations, and for the stages around them.
+ */
+@Builder(toBuilder = true)
+@Getter
+public class MatchConfig {
+    public static final MatchConfig DEFAULT = MatchConfig.builder().build();
+
+    @Builder.Default
+    private final TreeMatchAlgorithm treeMatchAlgorithm = TreeMatchAlgorithm.CHANGE_DISTILLING; //Which TreeMatch the DefaultModule binds.
+
+    //Thresholds of the Change Distilling algorithm.
+    @Builder.Default
+    private final int n = 3; //"n" in "n-grams"
+    @Builder.Default
+    private final float stringSimilarityThreshold = 1; //Strings with a similarity lower than this number will be considered not matching.
+    @Builder.Default
+    private final int smallSubtreeSize = 4; //What size is a "small" subtree. Fluri recommends 4.
+    @Builder.Default
+    private final float smallSubtreeSimilarityThreshold = 0.4f; //Small subtrees with a similarity lower than this are considered not matching. Fluri recommends 0.4.
+    @Builder.Default
+    private final float largeSubtreeSimilarityThreshold = 0.6f; //Large subtrees with a similarity lower than this are considered not matching. Fluri recommends 0.6.
+
+    //Work budgets. Past a budget, the matcher switches to a cheaper strategy instead of doing all of the work. 0 means no budget.
+    @Builder.Default
+    private final long maxCandidatePairs = 0; //Most same label leaf pairs to score. Past this, leaves are only matched with leaves of equal value.
+    @Builder.Default
+    private final long maxSimilarityCalls = 0; //Most leaf pairs and inner node pairs to compare. Past this, leaves are matched as above, and inner nodes by position.
+
+    @Builder.Default
+    private final boolean matchIdenticalSubtrees = false; //Whether identical subtrees are matched wholesale before leaves are scored.
+    @Builder.Default
+    private final boolean matchExactLeafTwins = false; //Whether leaves with a unique exact twin are matched before leaves are scored.
+    @Builder.Default
+    private final LeafMatchingMode leafMatchingMode = LeafMatchingMode.EXACT; //How leaves are paired up before they are scored.
+    @Builder.Default
+    private final int leafCandidatesPerLeaf = 0; //How many of the best scored candidates to keep for every leaf of A. 0 keeps them all.
+    @Builder.Default
+    private final int leafScoringParallelism = 1; //More than 1 scores leaves one label per task, on a shared fork/join pool with this many threads. 1 scores on the calling thread.
+    @Builder.Default
+    private final InnerNodeMatchingMode innerNodeMatchingMode = InnerNodeMatchingMode.FIRST_FIT; //How inner nodes find their partners.
+    @Builder.Default
+    private final int exactSubtreeMaximumSize = 0; //Inner nodes whose subtrees both have at most this many nodes are compared by exact tree edit distance. 0 turns it off.
+    @Builder.Default
+    private final boolean lineAnchoring = false; //Whether nodes in lines a line diff found unchanged are matched by position before the trees are matched.
+    @Builder.Default
+    private final int lineAnchoringMaximumEdits = 1000; //How many changed lines the line diff looks for before giving up on anchoring.
+    @Builder.Default
+    private final boolean memberPartitioning = false; //Whether the members of matching types are paired up and matched on their own before the trees are matched.
+    @Builder.Default
+    private final int memberMatchingParallelism = Runtime.getRuntime().availableProcessors(); //More than 1 matches member pairs as separate tasks, on a shared fork/join pool with this many threads. 1 matches them on the calling thread.
+    @Builder.Default
+    private final int memberNameN = 3; //"n" in "n-grams", for the similarity of member names.
+    @Builder.Default
+    private final float memberNameSimilarityThreshold = 1; //Members whose names are less similar than this are not paired up by similarity.
+
+    //Settings of the GumTree algorithm, used with TreeMatchAlgorithm.GUMTREE. Falleri et al. recommend these values.
+    @Builder.Default
+    private final int gumTreeMinHeight = 2; //Identical subtrees lower than this are not matched top down. Leaves have a height of 1.
+    @Builder.Default
+    private final float gumTreeMinDice = 0.5f; //Inner nodes sharing a smaller share of matched descendants than this are not matched.
+    @Builder.Default
+    private final int gumTreeMaxRecoverySize = 100; //Matched subtrees this large or larger do not go through recovery.
+
+    //Settings of AdaptiveTreeMatchImpl, used with TreeMatchAlgorithm.ADAPTIVE.
+    @Builder.Default
+    private final int adaptiveExactTreeMaximumSize = 30; //Trees with at most this many nodes are matched by exact tree edit distance.
+    @Builder.Default
+    private final long adaptiveHashingCandidatePairs = 1_000_000; //Trees with more same label leaf pairs than this are matched with hashing and MinHash.
+
+    //MinHash settings, used with LeafMatchingMode.MIN_HASH.
+    //Two values with n-gram Jaccard similarity j share a bucket with probability 1-(1-j^rows)^bands.
+    //More bands find more matches, more rows per band score fewer unlikely pairs.
+    @Builder.Default
+    private final int minHashBands = 20;
+    @Builder.Default
+    private final int minHashRowsPerBand = 3;
+    @Builder.Default
+    private final long minHashSeed = 0x5DEECE66DL;
+}
@@ -0,0 +1,17 @@
+package org.architectdrone.javacodereviewprototype.tree;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * What {@link AdaptiveTreeMatchImpl} saw and did for one pair of trees.
+ */
+@AllArgsConstructor
+@Getter
+public class MatchRecord {
+    private final MatchStrategy strategy;
+    private final int nodeCountA;
+    private final int nodeCountB;
+    private final long estimatedCandidatePairs; //Pairs of leaves of A and B with the same label.
+    private final long elapsedNanos; //Time spent matching, not counting the time spent choosing the strategy.
+}
@@ -0,0 +1,21 @@
+package org.architectdrone.javacodereviewprototype.tree;
+
+/**
+ * The strategies {@link AdaptiveTreeMatchImpl} chooses from, cheapest inputs first.
+ */
+public enum MatchStrategy {
+    /**
+     * Trees small enough to be matched along an optimal edit script, found with {@link TreeEditDistance}.
+     */
+    EXACT,
+    /**
+     * Change Distilling, with the configured settings.
+     */
+    CHANGE_DISTILLING,
+    /**
+     * Change Distilling on trees with too many candidate leaf pairs to score: identical subtrees and leaves with a unique
+     * twin are matched by hash first, leaves are paired up with {@link LeafMatchingMode#MIN_HASH}, and inner nodes are
+     * matched {@link InnerNodeMatchingMode#BOTTOM_UP}.
+     */
+    HASHING
+}
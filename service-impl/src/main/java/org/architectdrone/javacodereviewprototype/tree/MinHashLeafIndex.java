@@ -0,0 +1,135 @@
+package org.architectdrone.javacodereviewprototype.tree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+import org.architectdrone.javacodereviewprototype.utils.common.Hashing;
+import org.architectdrone.javacodereviewprototype.utils.strings.NGramProfile;
+
+/**
+ * Locality sensitive hashing of leaves, by the MinHash signatures of their n-grams.
+ * <p>
+ * Every leaf gets bands * rows MinHash values. Each band of rows is hashed into a bucket, per label, and leaves sharing
+ * at least one bucket are candidates. Leaves with similar n-grams are likely to share a bucket, leaves with disjoint
+ * n-grams never do. Unlike {@link LeafCandidateIndex}, this may miss pairs that beat the minimum similarity.
+ * <p>
+ * Only works with packed profiles (see {@link NGramProfile#isPacked()}).
+ * @param <L> The label type
+ */
+class MinHashLeafIndex<L> implements LeafCandidateGenerator<L> {
+    private final int bands;
+    private final int rowsPerBand;
+    private final long[] seeds; //One per MinHash function.
+    private final Map<L, Map<Long, List<Integer>>> buckets = new HashMap<>();
+    private final long[] signature; //Scratch: signature of the leaf being looked up.
+    private final int[] seenBy; //Scratch: last lookup that found each indexed leaf.
+    private int lookup = 0;
+    private int[] candidates = new int[16]; //Scratch: candidates of the leaf being looked up.
+
+    /**
+     * Indexes leaves.
+     * @param leaves The leaves to index.
+     * @param profiles Packed profile of the value of every leaf, in the same order.
+     * @param matchConfig Gives the number of bands, rows per band and the seed.
+     */
+    MinHashLeafIndex(List<DiffTree<L>> leaves, List<NGramProfile> profiles, MatchConfig matchConfig)
+    {
+        this.bands = matchConfig.getMinHashBands();
+        this.rowsPerBand = matchConfig.getMinHashRowsPerBand();
+        this.seeds = new long[bands * rowsPerBand];
+        long seed = matchConfig.getMinHashSeed();
+        for (int i = 0; i < seeds.length; i++) {
+            seed = Hashing.mix(seed + i);
+            seeds[i] = seed;
+        }
+        this.signature = new long[seeds.length];
+        this.seenBy = new int[leaves.size()];
+
+        for (int i = 0; i < leaves.size(); i++) {
+            Map<Long, List<Integer>> labelBuckets = buckets.computeIfAbsent(leaves.get(i).getLabel(), l -> new HashMap<>());
+            computeSignature(profiles.get(i));
+            for (int band = 0; band < bands; band++) {
+                labelBuckets.computeIfAbsent(getBucket(band), b -> new ArrayList<>()).add(i);
+            }
+        }
+    }
+
+    /**
+     * Finds every indexed leaf with the given label that shares a bucket with the given profile.
+     * Candidates are handed out in the order they were indexed in. The minimum similarity is left to the caller.
+     * @param label The label of the leaf being looked up.
+     * @param profile Packed profile of the value of the leaf being looked up.
+     * @param minimumSimilarity Not used, candidates are approximate.
+     * @param candidateConsumer Receives the position of every candidate in the indexed list.
+     */
+    @Override
+    public void forEachCandidate(L label, NGramProfile profile, float minimumSimilarity, IntConsumer candidateConsumer)
+    {
+        Map<Long, List<Integer>> labelBuckets = buckets.get(label);
+        if (labelBuckets == null)
+        {
+            return;
+        }
+
+        lookup++;
+        int candidateCount = 0;
+        computeSignature(profile);
+        for (int band = 0; band < bands; band++) {
+            List<Integer> bucket = labelBuckets.get(getBucket(band));
+            if (bucket == null)
+            {
+                continue;
+            }
+            for (int leaf : bucket)
+            {
+                if (seenBy[leaf] != lookup)
+                {
+                    seenBy[leaf] = lookup;
+                    if (candidateCount == candidates.length)
+                    {
+                        candidates = Arrays.copyOf(candidates, candidateCount * 2);
+                    }
+                    candidates[candidateCount++] = leaf;
+                }
+            }
+        }
+
+        Arrays.sort(candidates, 0, candidateCount);
+        for (int c = 0; c < candidateCount; c++) {
+            candidateConsumer.accept(candidates[c]);
+        }
+    }
+
+    /**
+     * Fills the signature scratch with the MinHash values of a profile.
+     */
+    private void computeSignature(NGramProfile profile)
+    {
+        Arrays.fill(signature, Long.MAX_VALUE);
+        for (long nGram : profile.getPackedNGrams())
+        {
+            for (int i = 0; i < seeds.length; i++) {
+                long hash = Hashing.mix(nGram ^ seeds[i]);
+                if (hash < signature[i])
+                {
+                    signature[i] = hash;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The bucket of one band of the signature scratch.
+     */
+    private long getBucket(int band)
+    {
+        long bucket = band;
+        for (int row = band * rowsPerBand; row < (band + 1) * rowsPerBand; row++) {
+            bucket = Hashing.mix(bucket * 31 + signature[row]);
+        }
+        return bucket;
+    }
+}
@@ -13,4 +13,23 @@ public interface PopulateDiffTree {
      * @param <L> The label type.
      */
     <L> void populateDiffTree(DiffTree<L> treeA, DiffTree<L> treeB);
+
+    /**
+     * Same as {@link #populateDiffTree(DiffTree, DiffTree)}, but stops early once the token is cancelled or its deadline passes.
+     * Implementations that cannot stop part way only check the token before they start.
+     * @param treeA The original tree.
+     * @param treeB The modified tree.
+     * @param cancellationToken Checked as population goes.
+     * @param <L> The label type.
+     * @return Whether population ran to completion. When it did not, only the upper levels of the tree are populated.
+     */
+    default <L> boolean populateDiffTree(DiffTree<L> treeA, DiffTree<L> treeB, CancellationToken cancellationToken)
+    {
+        if (cancellationToken.isCancelled())
+        {
+            return false;
+        }
+        populateDiffTree(treeA, treeB);
+        return true;
+    }
 }
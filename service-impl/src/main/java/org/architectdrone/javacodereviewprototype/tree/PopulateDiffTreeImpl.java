@@ -29,12 +29,28 @@ import static org.architectdrone.javacodereviewprototype.tree.ReferenceType.*;
 public class PopulateDiffTreeImpl implements PopulateDiffTree {
     @Override
     public <L> void populateDiffTree(final DiffTree<L> treeA, final DiffTree<L> treeB) {
+        populateDiffTree(treeA, treeB, new CancellationToken());
+    }
+
+    /**
+     * {@inheritDoc}
+     * The token is checked before every level. The levels that were populated are consistent, and the levels below are
+     * left as they were.
+     */
+    @Override
+    public <L> boolean populateDiffTree(final DiffTree<L> treeA, final DiffTree<L> treeB, final CancellationToken cancellationToken) {
         assert treeA.getMatch() == treeB;
         treeA.populateAdvancedData();
         treeB.populateAdvancedData();
         int level = 0;
+        boolean isComplete = true;
         while (true)
         {
+            if (cancellationToken.isCancelled())
+            {
+                isComplete = false;
+                break;
+            }
             level++;
             List<DiffTree<L>> originalNodes = treeA.getLevel(level);
             List<DiffTree<L>> modifiedNodes = treeB.getLevel(level);
@@ -70,6 +86,7 @@ public class PopulateDiffTreeImpl implements PopulateDiffTree {
             }
         }
         rectifyNodes(treeA);
+        return isComplete;
     }
 
     /**
@@ -85,7 +102,7 @@ public class PopulateDiffTreeImpl implements PopulateDiffTree {
     {
         DiffTree<L> matchedNode = nodeToModify.getMatch();
         nodeToModify.oldValue = nodeToModify.value;
-        nodeToModify.value = matchedNode.value;
+        nodeToModify.setValue(matchedNode.value);
         if (nodeToModify.getReferenceType() == NONE)
         {
             nodeToModify.setReferenceType(MODIFY);
@@ -0,0 +1,226 @@
+package org.architectdrone.javacodereviewprototype.tree;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of scored potential leaf matches, kept as parallel primitive arrays.
+ * <p>
+ * Leaves are referred to by their index in the lists of leaves that were scored, so an entry costs 12 bytes instead of
+ * a Pair of Pairs and a boxed Float. Entries keep the order they were added in, which every sort here respects on ties.
+ */
+final class ScoredLeafMatches {
+    private static final int RADIX_BITS = 8;
+    private static final int RADIX = 1 << RADIX_BITS;
+
+    private int[] leavesA;
+    private int[] leavesB;
+    private float[] scores;
+    private int size;
+    private long scoredPairCount; //How many pairs were scored, including the ones that were not added.
+
+    ScoredLeafMatches()
+    {
+        this(16);
+    }
+
+    ScoredLeafMatches(int initialCapacity)
+    {
+        int capacity = Math.max(1, initialCapacity);
+        leavesA = new int[capacity];
+        leavesB = new int[capacity];
+        scores = new float[capacity];
+    }
+
+    /**
+     * Adds a scored potential match.
+     * @param leafA Index of the leaf of A.
+     * @param leafB Index of the leaf of B.
+     * @param score The score.
+     */
+    void add(int leafA, int leafB, float score)
+    {
+        if (size == scores.length)
+        {
+            int capacity = size * 2;
+            leavesA = Arrays.copyOf(leavesA, capacity);
+            leavesB = Arrays.copyOf(leavesB, capacity);
+            scores = Arrays.copyOf(scores, capacity);
+        }
+        leavesA[size] = leafA;
+        leavesB[size] = leafB;
+        scores[size] = score;
+        size++;
+    }
+
+    int size()
+    {
+        return size;
+    }
+
+    /**
+     * Counts a pair whose similarity was computed, whether or not it is then added.
+     */
+    void countScoredPair()
+    {
+        scoredPairCount++;
+    }
+
+    /**
+     * @return How many pairs were scored to fill this buffer.
+     */
+    long getScoredPairCount()
+    {
+        return scoredPairCount;
+    }
+
+    int getLeafA(int entry)
+    {
+        return leavesA[entry];
+    }
+
+    int getLeafB(int entry)
+    {
+        return leavesB[entry];
+    }
+
+    float getScore(int entry)
+    {
+        return scores[entry];
+    }
+
+    /**
+     * Adds every entry of another buffer, translating its leaf indexes, and its count of scored pairs.
+     * @param other The entries to add.
+     * @param leafAIndexes Index, in this buffer, of every leaf of A of the other buffer.
+     * @param leafBIndexes Index, in this buffer, of every leaf of B of the other buffer.
+     */
+    void addAll(ScoredLeafMatches other, int[] leafAIndexes, int[] leafBIndexes)
+    {
+        scoredPairCount += other.scoredPairCount;
+        for (int i = 0; i < other.size; i++)
+        {
+            add(leafAIndexes[other.leavesA[i]], leafBIndexes[other.leavesB[i]], other.scores[i]);
+        }
+    }
+
+    /**
+     * Only keeps the best entries added since a given entry. Entries that are kept stay in the order they were added,
+     * and on ties the earlier entries are kept.
+     * @param from The first entry to consider.
+     * @param maximumEntries How many entries to keep.
+     */
+    void keepBest(int from, int maximumEntries)
+    {
+        int count = size - from;
+        if (count <= maximumEntries)
+        {
+            return;
+        }
+        int[] order = getOrderByScore(from, size);
+        int[] kept = Arrays.copyOf(order, maximumEntries);
+        Arrays.sort(kept);
+        for (int i = 0; i < maximumEntries; i++)
+        {
+            int entry = kept[i];
+            leavesA[from + i] = leavesA[entry];
+            leavesB[from + i] = leavesB[entry];
+            scores[from + i] = scores[entry];
+        }
+        size = from + maximumEntries;
+    }
+
+    /**
+     * Reorders the entries by leaf of A, keeping the order of entries with the same leaf of A (a counting sort).
+     * @param leafCount How many leaves of A there are.
+     */
+    void sortByLeafA(int leafCount)
+    {
+        int[] starts = new int[leafCount + 1];
+        for (int i = 0; i < size; i++)
+        {
+            starts[leavesA[i] + 1]++;
+        }
+        for (int i = 0; i < leafCount; i++)
+        {
+            starts[i + 1] += starts[i];
+        }
+        int[] sortedA = new int[scores.length];
+        int[] sortedB = new int[scores.length];
+        float[] sortedScores = new float[scores.length];
+        for (int i = 0; i < size; i++)
+        {
+            int position = starts[leavesA[i]]++;
+            sortedA[position] = leavesA[i];
+            sortedB[position] = leavesB[i];
+            sortedScores[position] = scores[i];
+        }
+        leavesA = sortedA;
+        leavesB = sortedB;
+        scores = sortedScores;
+    }
+
+    /**
+     * @return Every entry, from the highest score to the lowest. Entries with equal scores stay in the order they were added.
+     */
+    int[] getOrderByScore()
+    {
+        return getOrderByScore(0, size);
+    }
+
+    /**
+     * Sorts entries by score, highest first, with a stable least significant digit radix sort on the bits of the scores.
+     * Scores are ordered like {@link Float#compare(float, float)} orders them.
+     * @param from First entry to sort.
+     * @param to One past the last entry to sort.
+     * @return The sorted entries.
+     */
+    private int[] getOrderByScore(int from, int to)
+    {
+        int count = to - from;
+        int[] keys = new int[count];
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++)
+        {
+            keys[i] = getDescendingKey(scores[from + i]);
+            order[i] = from + i;
+        }
+        int[] sortedKeys = new int[count];
+        int[] sortedOrder = new int[count];
+        int[] counts = new int[RADIX + 1];
+        for (int shift = 0; shift < Integer.SIZE; shift += RADIX_BITS)
+        {
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < count; i++)
+            {
+                counts[((keys[i] >>> shift) & (RADIX - 1)) + 1]++;
+            }
+            for (int i = 0; i < RADIX; i++)
+            {
+                counts[i + 1] += counts[i];
+            }
+            for (int i = 0; i < count; i++)
+            {
+                int position = counts[(keys[i] >>> shift) & (RADIX - 1)]++;
+                sortedKeys[position] = keys[i];
+                sortedOrder[position] = order[i];
+            }
+            int[] swap = keys;
+            keys = sortedKeys;
+            sortedKeys = swap;
+            swap = order;
+            order = sortedOrder;
+            sortedOrder = swap;
+        }
+        return order;
+    }
+
+    /**
+     * Maps a score to an int whose unsigned order is the reverse of {@link Float#compare(float, float)}.
+     */
+    private static int getDescendingKey(float score)
+    {
+        int bits = Float.floatToIntBits(score);
+        int ascending = bits ^ ((bits >> 31) | Integer.MIN_VALUE); //Unsigned order is now the order of Float.compare.
+        return ~ascending;
+    }
+}
@@ -0,0 +1,84 @@
+package org.architectdrone.javacodereviewprototype.tree;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Gives every distinct label and value a dense int id, and a single shared instance.
+ * <p>
+ * The same identifiers (String, i, public...) and labels show up thousands of times in a file. Trees built with the
+ * same symbol table share one String per distinct value, and can compare labels and values by comparing ids.
+ * Both trees of a diff must use the same table for their ids to be comparable.
+ * @param <L> The label type
+ */
+public class SymbolTable<L> {
+    private final Map<L, Integer> labelIds = new ConcurrentHashMap<>();
+    private final Map<String, Symbol> values = new ConcurrentHashMap<>();
+
+    /**
+     * @param label A label.
+     * @return The id of the label. Equal labels always get the same id.
+     */
+    public int getLabelId(L label)
+    {
+        Integer id = labelIds.get(label);
+        if (id != null)
+        {
+            return id;
+        }
+        synchronized (labelIds)
+        {
+            return labelIds.computeIfAbsent(label, l -> labelIds.size());
+        }
+    }
+
+    /**
+     * @param value A value.
+     * @return The id of the value. Equal values always get the same id.
+     */
+    public int getValueId(String value)
+    {
+        return getSymbol(value).id;
+    }
+
+    /**
+     * @param value A value.
+     * @return The single instance shared by every value equal to this one.
+     */
+    public String intern(String value)
+    {
+        return getSymbol(value).value;
+    }
+
+    /**
+     * @return How many distinct values have been seen.
+     */
+    public int getValueCount()
+    {
+        return values.size();
+    }
+
+    private Symbol getSymbol(String value)
+    {
+        Symbol symbol = values.get(value);
+        if (symbol != null)
+        {
+            return symbol;
+        }
+        synchronized (values)
+        {
+            return values.computeIfAbsent(value, v -> new Symbol(values.size(), v));
+        }
+    }
+
+    private static final class Symbol {
+        private final int id;
+        private final String value;
+
+        Symbol(int id, String value)
+        {
+            this.id = id;
+            this.value = value;
+        }
+    }
+}
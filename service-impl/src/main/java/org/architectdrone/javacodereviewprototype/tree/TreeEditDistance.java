@@ -0,0 +1,308 @@
+package org.architectdrone.javacodereviewprototype.tree;
+
+import com.github.javaparser.utils.Pair;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.BiPredicate;
+
+/**
+ * Exact tree edit distance between small subtrees, using the algorithm of Zhang and Shasha.
+ * <p>
+ * Deleting or inserting a node costs 1. Relabeling is not allowed: nodes with the same label cost 0 to map if their
+ * values are equal, and 1 otherwise. The cost grows with the product of the sizes of the subtrees, so only subtrees of
+ * at most {@link MatchConfig#getExactSubtreeMaximumSize()} nodes are compared. Only the tables of the last comparison are
+ * kept, so memory stays bounded by the maximum size, and matching the descendants of the pair that was just scored does
+ * not compute them again.
+ * <p>
+ * Not thread safe. Use one instance per matching.
+ * @see <a href="https://doi.org/10.1137/0218082">Simple Fast Algorithms for the Editing Distance between Trees and Related Problems</a>
+ */
+class TreeEditDistance<L> {
+    private static final int FORBIDDEN = Integer.MAX_VALUE / 4; //Cost of mapping nodes with different labels. More than deleting and inserting them.
+
+    private final int maximumSize;
+    private Computation lastComputation; //Tables of the last pair compared, or null.
+
+    /**
+     * @param maximumSize Largest subtree to compare, in nodes.
+     */
+    TreeEditDistance(int maximumSize)
+    {
+        this.maximumSize = maximumSize;
+    }
+
+    /**
+     * @return Whether both subtrees are small enough to be compared.
+     */
+    boolean canCompare(DiffTree<L> subtreeA, DiffTree<L> subtreeB)
+    {
+        return isSmallEnough(subtreeA) && isSmallEnough(subtreeB);
+    }
+
+    /**
+     * @return 1 minus the edit distance over the size of the larger subtree. 1 for identical subtrees, 0 or less for
+     * subtrees that have nothing in common.
+     */
+    float getSimilarity(DiffTree<L> subtreeA, DiffTree<L> subtreeB)
+    {
+        int maximumNodes = Math.max(countNodes(subtreeA), countNodes(subtreeB));
+        return 1 - (float) getDistance(subtreeA, subtreeB) / maximumNodes;
+    }
+
+    /**
+     * Cheap bound on {@link #getSimilarity}: the distance is at least the difference in size, since every extra node must
+     * be deleted or inserted.
+     * @return The highest similarity the subtrees could have.
+     */
+    float getSimilarityUpperBound(DiffTree<L> subtreeA, DiffTree<L> subtreeB)
+    {
+        int nodesA = countNodes(subtreeA);
+        int nodesB = countNodes(subtreeB);
+        return (float) Math.min(nodesA, nodesB) / Math.max(nodesA, nodesB);
+    }
+
+    /**
+     * @return The smallest number of deletions, insertions and value changes that turn subtreeA into subtreeB.
+     */
+    int getDistance(DiffTree<L> subtreeA, DiffTree<L> subtreeB)
+    {
+        return getComputation(subtreeA, subtreeB).getDistance();
+    }
+
+    /**
+     * Matches the descendants of two subtrees the way an optimal edit script maps them. Descendants that are already
+     * matched are left alone, and so are the nodes they are mapped to.
+     * @param subtreeA The original subtree.
+     * @param subtreeB The modified subtree.
+     * @param canMatch Whether two mapped descendants may be matched. Pairs it rejects are left unmatched.
+     */
+    void matchDescendants(DiffTree<L> subtreeA, DiffTree<L> subtreeB, BiPredicate<DiffTree<L>, DiffTree<L>> canMatch)
+    {
+        for (Pair<DiffTree<L>, DiffTree<L>> pair : getComputation(subtreeA, subtreeB).getMapping())
+        {
+            if (pair.a != subtreeA && !pair.a.isMatched() && !pair.b.isMatched() && canMatch.test(pair.a, pair.b))
+            {
+                pair.a.setMatch(pair.b);
+            }
+        }
+    }
+
+    private Computation getComputation(DiffTree<L> subtreeA, DiffTree<L> subtreeB)
+    {
+        if (lastComputation == null || !lastComputation.isFor(subtreeA, subtreeB))
+        {
+            lastComputation = new Computation(subtreeA, subtreeB);
+        }
+        return lastComputation;
+    }
+
+    private boolean isSmallEnough(DiffTree<L> subtree)
+    {
+        return countNodes(subtree, maximumSize + 1) <= maximumSize;
+    }
+
+    /**
+     * @return The number of nodes in the subtree, itself included.
+     */
+    int countNodes(DiffTree<L> subtree)
+    {
+        return countNodes(subtree, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @return The number of nodes in the subtree, or a number above the limit once it is passed.
+     */
+    private static <L> int countNodes(DiffTree<L> subtree, int limit)
+    {
+        if (subtree.isNumbered())
+        {
+            return subtree.getSubtreeSize();
+        }
+        int count = 1;
+        for (DiffTree<L> child : subtree.getChildren())
+        {
+            count += countNodes(child, limit - count);
+            if (count > limit)
+            {
+                break;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * The tables of one comparison. Nodes are numbered 1 to n in postorder.
+     */
+    private final class Computation {
+        private final List<DiffTree<L>> nodesA = new ArrayList<>();
+        private final List<DiffTree<L>> nodesB = new ArrayList<>();
+        private final int[] leftmostA; //Postorder number of the leftmost leaf under every node.
+        private final int[] leftmostB;
+        private final int[][] treeDistances; //Distance between the subtrees of every pair of nodes.
+        private final int[][] forestDistances;
+
+        Computation(DiffTree<L> subtreeA, DiffTree<L> subtreeB)
+        {
+            nodesA.add(null);
+            nodesB.add(null);
+            leftmostA = new int[countNodes(subtreeA) + 1];
+            leftmostB = new int[countNodes(subtreeB) + 1];
+            number(subtreeA, nodesA, leftmostA);
+            number(subtreeB, nodesB, leftmostB);
+            treeDistances = new int[nodesA.size()][nodesB.size()];
+            forestDistances = new int[nodesA.size()][nodesB.size()];
+            for (int i : getKeyroots(leftmostA))
+            {
+                for (int j : getKeyroots(leftmostB))
+                {
+                    computeForestDistances(i, j);
+                }
+            }
+        }
+
+        boolean isFor(DiffTree<L> subtreeA, DiffTree<L> subtreeB)
+        {
+            return nodesA.get(nodesA.size() - 1) == subtreeA && nodesB.get(nodesB.size() - 1) == subtreeB;
+        }
+
+        int getDistance()
+        {
+            return treeDistances[nodesA.size() - 1][nodesB.size() - 1];
+        }
+
+        /**
+         * Walks back through the tables, from the roots, to find the pairs an optimal edit script maps.
+         */
+        List<Pair<DiffTree<L>, DiffTree<L>>> getMapping()
+        {
+            List<Pair<DiffTree<L>, DiffTree<L>>> mapping = new ArrayList<>();
+            Deque<int[]> subtreePairs = new ArrayDeque<>();
+            subtreePairs.push(new int[]{nodesA.size() - 1, nodesB.size() - 1});
+            while (!subtreePairs.isEmpty())
+            {
+                int[] subtreePair = subtreePairs.pop();
+                int i = subtreePair[0];
+                int j = subtreePair[1];
+                computeForestDistances(i, j);
+                int a = i;
+                int b = j;
+                while (a >= leftmostA[i] || b >= leftmostB[j])
+                {
+                    if (a >= leftmostA[i] && forestDistances[a][b] == forestDistances[a - 1][b] + 1)
+                    {
+                        a--;
+                    }
+                    else if (b >= leftmostB[j] && forestDistances[a][b] == forestDistances[a][b - 1] + 1)
+                    {
+                        b--;
+                    }
+                    else if (leftmostA[a] == leftmostA[i] && leftmostB[b] == leftmostB[j])
+                    {
+                        mapping.add(new Pair<>(nodesA.get(a), nodesB.get(b)));
+                        a--;
+                        b--;
+                    }
+                    else
+                    {
+                        subtreePairs.push(new int[]{a, b});
+                        a = leftmostA[a] - 1;
+                        b = leftmostB[b] - 1;
+                    }
+                }
+            }
+            return mapping;
+        }
+
+        /**
+         * Fills the forest distances between the prefixes of the subtrees of i and j, and the tree distances of the
+         * pairs whose subtrees are such prefixes.
+         */
+        private void computeForestDistances(int i, int j)
+        {
+            int firstA = leftmostA[i];
+            int firstB = leftmostB[j];
+            forestDistances[firstA - 1][firstB - 1] = 0;
+            for (int a = firstA; a <= i; a++)
+            {
+                forestDistances[a][firstB - 1] = forestDistances[a - 1][firstB - 1] + 1;
+            }
+            for (int b = firstB; b <= j; b++)
+            {
+                forestDistances[firstA - 1][b] = forestDistances[firstA - 1][b - 1] + 1;
+            }
+            for (int a = firstA; a <= i; a++)
+            {
+                for (int b = firstB; b <= j; b++)
+                {
+                    int deleteOrInsert = Math.min(forestDistances[a - 1][b], forestDistances[a][b - 1]) + 1;
+                    if (leftmostA[a] == firstA && leftmostB[b] == firstB)
+                    {
+                        forestDistances[a][b] = Math.min(deleteOrInsert, forestDistances[a - 1][b - 1] + getMappingCost(nodesA.get(a), nodesB.get(b)));
+                        treeDistances[a][b] = forestDistances[a][b];
+                    }
+                    else
+                    {
+                        forestDistances[a][b] = Math.min(deleteOrInsert, forestDistances[leftmostA[a] - 1][leftmostB[b] - 1] + treeDistances[a][b]);
+                    }
+                }
+            }
+        }
+    }
+
+    private static <L> int getMappingCost(DiffTree<L> nodeA, DiffTree<L> nodeB)
+    {
+        if (!nodeA.hasSameLabel(nodeB))
+        {
+            return FORBIDDEN;
+        }
+        return nodeA.hasSameValue(nodeB) ? 0 : 1;
+    }
+
+    /**
+     * Numbers the nodes of a subtree in postorder, from 1, and records the leftmost leaf under every node.
+     * @return The number of the subtree's root.
+     */
+    private static <L> int number(DiffTree<L> node, List<DiffTree<L>> nodes, int[] leftmost)
+    {
+        int first = -1;
+        for (DiffTree<L> child : node.getChildren())
+        {
+            int childNumber = number(child, nodes, leftmost);
+            if (first == -1)
+            {
+                first = leftmost[childNumber];
+            }
+        }
+        nodes.add(node);
+        int nodeNumber = nodes.size() - 1;
+        leftmost[nodeNumber] = first == -1 ? nodeNumber : first;
+        return nodeNumber;
+    }
+
+    /**
+     * @return The nodes that are the highest with their leftmost leaf, in increasing order.
+     */
+    private static int[] getKeyroots(int[] leftmost)
+    {
+        int size = leftmost.length - 1;
+        boolean[] seen = new boolean[size + 1];
+        int[] keyroots = new int[size];
+        int count = 0;
+        for (int node = size; node >= 1; node--)
+        {
+            if (!seen[leftmost[node]])
+            {
+                seen[leftmost[node]] = true;
+                keyroots[count++] = node;
+            }
+        }
+        int[] sorted = new int[count];
+        for (int k = 0; k < count; k++)
+        {
+            sorted[k] = keyroots[count - 1 - k];
+        }
+        return sorted;
+    }
+}
@@ -12,4 +12,33 @@ public interface TreeMatch {
      * @param <L> Label type
      */
     <L> void matchTrees(DiffTree<L> treeA, DiffTree<L> treeB);
+
+    /**
+     * Same as {@link #matchTrees(DiffTree, DiffTree)}, but stops early once the token is cancelled or its deadline passes.
+     * Implementations that cannot stop part way only check the token before they start.
+     * @param treeA The original tree
+     * @param treeB The modified tree
+     * @param cancellationToken Checked as matching goes.
+     * @param <L> Label type
+     * @return Whether matching ran to completion. When it did not, the matches found so far are kept, and are a best effort.
+     */
+    default <L> boolean matchTrees(DiffTree<L> treeA, DiffTree<L> treeB, CancellationToken cancellationToken)
+    {
+        if (cancellationToken.isCancelled())
+        {
+            return false;
+        }
+        matchTrees(treeA, treeB);
+        return true;
+    }
+
+    /**
+     * Matches the nodes of a subtree of one tree to the nodes of a subtree of another tree, and the two roots together.
+     * Used to match parts of two trees on their own, before {@link #matchTrees(DiffTree, DiffTree)} is called for the
+     * whole trees. Nodes outside of the subtrees are not touched, so disjoint subtrees can be matched concurrently.
+     * @param subtreeA A subtree of the original tree
+     * @param subtreeB A subtree of the modified tree
+     * @param <L> Label type
+     */
+    <L> void matchSubtrees(DiffTree<L> subtreeA, DiffTree<L> subtreeB);
 }
@@ -0,0 +1,22 @@
+package org.architectdrone.javacodereviewprototype.tree;
+
+/**
+ * Which {@link TreeMatch} implementation {@link org.architectdrone.javacodereviewprototype.dependencyinjection.DefaultModule} binds.
+ */
+public enum TreeMatchAlgorithm {
+    /**
+     * {@link ChangeDistillationTreeMatchImpl}. Leaves are matched by the similarity of their values, and inner nodes by
+     * how many leaves they share.
+     */
+    CHANGE_DISTILLING,
+    /**
+     * {@link GumTreeTreeMatchImpl}. Identical subtrees are matched top down, and inner nodes by how many matched
+     * descendants they share. Faster on large trees, but leaves whose values changed are only matched when their parents are.
+     */
+    GUMTREE,
+    /**
+     * {@link AdaptiveTreeMatchImpl}. Chooses between exact matching, Change Distilling, and Change Distilling with hashing,
+     * from the sizes of the trees, and records its choices.
+     */
+    ADAPTIVE
+}
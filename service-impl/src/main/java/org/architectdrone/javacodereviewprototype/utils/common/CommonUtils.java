@@ -21,4 +21,14 @@ public interface CommonUtils {
      * @return The union of a and b
      */
     <T> Collection<T> getIntersection(Collection<T> a, Collection<T> b);
+
+    /**
+     * Counts the elements two collections have in common, without building the intersection.
+     * Elements are compared by identity, not by equals, so this suits objects that are only ever equal to themselves (like tree nodes).
+     * Every element is counted once, no matter how many times it appears in either collection.
+     * @param a collection a
+     * @param b collection b
+     * @return The number of distinct elements that are in both a and b
+     */
+    <T> int getIdentityIntersectionSize(Collection<T> a, Collection<T> b);
 }
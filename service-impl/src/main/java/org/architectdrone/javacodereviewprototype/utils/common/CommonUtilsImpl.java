@@ -3,10 +3,16 @@ package org.architectdrone.javacodereviewprototype.utils.common;
 import com.google.common.collect.Sets;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Set;
 
 public class CommonUtilsImpl implements CommonUtils {
+    private static final int SCRATCH_MAXIMUM_SIZE = 1024; //Largest collection the per-thread scratch set is used for, so that it never grows past this.
+    //Per-thread scratch set for identity intersections, emptied after every use.
+    private static final ThreadLocal<Set<Object>> IDENTITY_SCRATCH = ThreadLocal.withInitial(() -> Collections.newSetFromMap(new IdentityHashMap<>(SCRATCH_MAXIMUM_SIZE)));
+
     @Override
     public <T> Collection<T> getUnion(Collection<T> a, Collection<T> b) {
         Set<T> set = new HashSet<>();
@@ -21,4 +27,35 @@ public class CommonUtilsImpl implements CommonUtils {
     public <T> Collection<T> getIntersection(Collection<T> a, Collection<T> b) {
         return Sets.intersection(Sets.newHashSet(a), Sets.newHashSet(b));
     }
+
+    @Override
+    public <T> int getIdentityIntersectionSize(Collection<T> a, Collection<T> b) {
+        if (a.isEmpty() || b.isEmpty())
+        {
+            return 0;
+        }
+        boolean useScratch = a.size() <= SCRATCH_MAXIMUM_SIZE;
+        Set<Object> elementsOfA = useScratch ? IDENTITY_SCRATCH.get() : Collections.newSetFromMap(new IdentityHashMap<>(a.size()));
+        try
+        {
+            elementsOfA.addAll(a);
+            int intersectionSize = 0;
+            for (T element : b)
+            {
+                //Removing makes sure elements that appear more than once in b are only counted once.
+                if (elementsOfA.remove(element))
+                {
+                    intersectionSize++;
+                }
+            }
+            return intersectionSize;
+        }
+        finally
+        {
+            if (useScratch)
+            {
+                elementsOfA.clear();
+            }
+        }
+    }
 }
@@ -0,0 +1,29 @@
+package org.architectdrone.javacodereviewprototype.utils.common;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Fork/join pools shared by every matcher, one per parallelism level.
+ * <p>
+ * A pool is created the first time a level is asked for, and then lives as long as the JVM, like
+ * {@link ForkJoinPool#commonPool()}. Its workers are daemon threads that stop once they have been idle for a while, so
+ * nothing needs to be shut down, and matchers can ask for a pool on every call without creating threads.
+ */
+public final class ForkJoinPools {
+    private static final Map<Integer, ForkJoinPool> POOLS = new ConcurrentHashMap<>(); //By parallelism level.
+
+    private ForkJoinPools()
+    {
+    }
+
+    /**
+     * @param parallelism How many tasks the pool runs at once. At least 1.
+     * @return The shared pool with that parallelism.
+     */
+    public static ForkJoinPool getShared(int parallelism)
+    {
+        return POOLS.computeIfAbsent(parallelism, ForkJoinPool::new);
+    }
+}
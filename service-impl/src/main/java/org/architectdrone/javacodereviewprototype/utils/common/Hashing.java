@@ -0,0 +1,21 @@
+package org.architectdrone.javacodereviewprototype.utils.common;
+
+/**
+ * Hash functions shared by the tree and string code.
+ */
+public final class Hashing {
+    private Hashing()
+    {
+    }
+
+    /**
+     * SplitMix64 finalizer. Spreads every input bit over the whole output, so that inputs that differ in a single bit
+     * give unrelated hashes.
+     */
+    public static long mix(long x)
+    {
+        x = (x ^ (x >>> 30)) * 0xBF58476D1CE4E5B9L;
+        x = (x ^ (x >>> 27)) * 0x94D049BB133111EBL;
+        return x ^ (x >>> 31);
+    }
+}
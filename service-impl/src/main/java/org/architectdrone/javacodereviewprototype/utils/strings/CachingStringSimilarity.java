@@ -0,0 +1,205 @@
+package org.architectdrone.javacodereviewprototype.utils.strings;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.inject.Inject;
+
+/**
+ * A {@link StringSimilarity} that remembers the results of another {@link StringSimilarity}.
+ * <p>
+ * Source code compares the same pairs of identifiers over and over (i and j, get and set, common type names...), so
+ * results of comparing strings are kept by (a, b, n). Comparisons of {@link NGramProfile}s are passed straight on: the
+ * profiles already hold the n-grams, so comparing them costs less than a lookup. That is how the tree matchers compare
+ * values, so this is not bound as the {@link StringSimilarity}. It is only used where plain strings are compared, to
+ * pair up members by name (see {@link org.architectdrone.javacodereviewprototype.java.MemberPartitioning}).
+ * The cache is split into stripes, each with its own lock and least recently used eviction, so that one instance can be
+ * shared by diffs running on different threads.
+ */
+public class CachingStringSimilarity implements StringSimilarity {
+    static final int DEFAULT_MAXIMUM_SIZE = 1 << 16; //Default number of results to keep.
+    private static final int STRIPES = 16; //Must be a power of two.
+
+    private final StringSimilarity delegate;
+    private final Stripe[] stripes;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    @Inject
+    public CachingStringSimilarity(StringSimilarityImpl delegate)
+    {
+        this(delegate, DEFAULT_MAXIMUM_SIZE);
+    }
+
+    /**
+     * @param delegate The string similarity to remember the results of.
+     * @param maximumSize Roughly how many results to keep. Every stripe keeps an equal share.
+     */
+    public CachingStringSimilarity(StringSimilarity delegate, int maximumSize)
+    {
+        this.delegate = delegate;
+        this.stripes = new Stripe[STRIPES];
+        int maximumStripeSize = Math.max(1, (maximumSize + STRIPES - 1) / STRIPES);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(maximumStripeSize);
+        }
+    }
+
+    /**{@inheritDoc} */
+    @Override
+    public float getStringSimilarity(String a, String b, int n)
+    {
+        return getStringSimilarity(a, b, n, Float.NEGATIVE_INFINITY);
+    }
+
+    /**{@inheritDoc} */
+    @Override
+    public NGramProfile getProfile(String string, int n)
+    {
+        return delegate.getProfile(string, n);
+    }
+
+    /**{@inheritDoc} */
+    @Override
+    public float getStringSimilarity(NGramProfile a, NGramProfile b)
+    {
+        return delegate.getStringSimilarity(a, b);
+    }
+
+    /**
+     * Gets string similarity, from the cache if possible.
+     * Only exact results (at least minimumSimilarity) are remembered.
+     */
+    @Override
+    public float getStringSimilarity(String a, String b, int n, float minimumSimilarity)
+    {
+        Key key = new Key(a, b, n);
+        Stripe stripe = getStripe(key);
+        Float cached = stripe.get(key);
+        if (cached != null)
+        {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+        float similarity = delegate.getStringSimilarity(a, b, n, minimumSimilarity);
+        if (similarity >= minimumSimilarity)
+        {
+            stripe.put(key, similarity);
+        }
+        return similarity;
+    }
+
+    /**
+     * Gets string similarity of two profiles, straight from the underlying string similarity.
+     * Profiles are what the matcher compares in its innermost loops, and comparing them is cheaper than a cache lookup,
+     * so these results are not remembered.
+     */
+    @Override
+    public float getStringSimilarity(NGramProfile a, NGramProfile b, float minimumSimilarity)
+    {
+        return delegate.getStringSimilarity(a, b, minimumSimilarity);
+    }
+
+    /**
+     * @return How many lookups were answered from the cache.
+     */
+    public long getHitCount()
+    {
+        return hits.sum();
+    }
+
+    /**
+     * @return How many lookups had to be passed on to the underlying string similarity.
+     */
+    public long getMissCount()
+    {
+        return misses.sum();
+    }
+
+    /**
+     * @return How many results are currently kept.
+     */
+    public int getSize()
+    {
+        int size = 0;
+        for (Stripe stripe : stripes)
+        {
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    private Stripe getStripe(Key key)
+    {
+        int hash = key.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+    }
+
+    /**
+     * One share of the cache, guarded by its own lock.
+     */
+    private static final class Stripe {
+        private final LinkedHashMap<Key, Float> results;
+
+        Stripe(int maximumSize)
+        {
+            this.results = new LinkedHashMap<Key, Float>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key, Float> eldest) {
+                    return size() > maximumSize;
+                }
+            };
+        }
+
+        synchronized Float get(Key key)
+        {
+            return results.get(key);
+        }
+
+        synchronized void put(Key key, float similarity)
+        {
+            results.put(key, similarity);
+        }
+
+        synchronized int size()
+        {
+            return results.size();
+        }
+    }
+
+    private static final class Key {
+        private final String a;
+        private final String b;
+        private final int n;
+        private final int hash;
+
+        Key(String a, String b, int n)
+        {
+            this.a = a;
+            this.b = b;
+            this.n = n;
+            this.hash = 31 * (31 * a.hashCode() + b.hashCode()) + n;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+            {
+                return true;
+            }
+            if (!(o instanceof Key))
+            {
+                return false;
+            }
+            Key other = (Key) o;
+            return n == other.n && hash == other.hash && a.equals(other.a) && b.equals(other.b);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
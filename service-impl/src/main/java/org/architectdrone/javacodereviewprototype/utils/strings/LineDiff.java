@@ -0,0 +1,142 @@
+package org.architectdrone.javacodereviewprototype.utils.strings;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Line level diff of two texts, using Myers' O(ND) algorithm.
+ * <p>
+ * Lines are given ids first, so that lines are compared as ints. Lines that the two texts start and end with are
+ * aligned before the search, since most diffs of a file only touch a few regions of it.
+ */
+public final class LineDiff {
+    private LineDiff() {
+    }
+
+    /**
+     * Aligns the unchanged lines of two texts.
+     * @param a The original text.
+     * @param b The modified text.
+     * @param maximumEdits How many inserted and deleted lines to look for, at most.
+     * @return For every line of a (0 based), the line of b it is aligned with, or -1 if it was deleted or changed.
+     * Null if the texts differ by more than the maximum number of edits.
+     */
+    public static int[] getUnchangedLines(String a, String b, int maximumEdits)
+    {
+        Map<String, Integer> lineIds = new HashMap<>();
+        int[] linesA = getLineIds(a, lineIds);
+        int[] linesB = getLineIds(b, lineIds);
+
+        int[] unchangedLines = new int[linesA.length];
+        Arrays.fill(unchangedLines, -1);
+        int prefix = 0;
+        while (prefix < linesA.length && prefix < linesB.length && linesA[prefix] == linesB[prefix])
+        {
+            unchangedLines[prefix] = prefix;
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < linesA.length - prefix && suffix < linesB.length - prefix
+                && linesA[linesA.length - 1 - suffix] == linesB[linesB.length - 1 - suffix])
+        {
+            unchangedLines[linesA.length - 1 - suffix] = linesB.length - 1 - suffix;
+            suffix++;
+        }
+        boolean found = alignMiddle(linesA, prefix, linesA.length - suffix, linesB, prefix, linesB.length - suffix, maximumEdits, unchangedLines);
+        return found ? unchangedLines : null;
+    }
+
+    private static int[] getLineIds(String text, Map<String, Integer> lineIds)
+    {
+        String[] lines = text.split("\r\n|\r|\n", -1);
+        int[] ids = new int[lines.length];
+        for (int i = 0; i < lines.length; i++)
+        {
+            ids[i] = lineIds.computeIfAbsent(lines[i], line -> lineIds.size());
+        }
+        return ids;
+    }
+
+    /**
+     * Finds a shortest edit script between a[aStart, aEnd) and b[bStart, bEnd), and records the lines it keeps.
+     * A copy of the frontier is kept for every number of edits, so that the script can be walked back. Copies only
+     * hold the diagonals that can be reached, so they take O(D^2) memory in total.
+     * @return Whether a script with at most the maximum number of edits exists.
+     */
+    private static boolean alignMiddle(int[] a, int aStart, int aEnd, int[] b, int bStart, int bEnd, int maximumEdits, int[] unchangedLines)
+    {
+        int n = aEnd - aStart;
+        int m = bEnd - bStart;
+        int maximumD = Math.min(n + m, maximumEdits);
+        int offset = maximumD + 1;
+        int[] frontier = new int[2 * maximumD + 3]; //Furthest x reached on every diagonal k = x - y, at frontier[offset + k].
+        List<int[]> trace = new ArrayList<>();
+        for (int d = 0; d <= maximumD; d++)
+        {
+            trace.add(Arrays.copyOfRange(frontier, offset - d - 1, offset + d + 2));
+            for (int k = -d; k <= d; k += 2)
+            {
+                int x;
+                if (k == -d || (k != d && frontier[offset + k - 1] < frontier[offset + k + 1]))
+                {
+                    x = frontier[offset + k + 1]; //Insertion of a line of b.
+                }
+                else
+                {
+                    x = frontier[offset + k - 1] + 1; //Deletion of a line of a.
+                }
+                int y = x - k;
+                while (x < n && y < m && a[aStart + x] == b[bStart + y])
+                {
+                    x++;
+                    y++;
+                }
+                frontier[offset + k] = x;
+                if (x >= n && y >= m)
+                {
+                    walkBack(trace, d, n, m, aStart, bStart, unchangedLines);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static void walkBack(List<int[]> trace, int edits, int x, int y, int aStart, int bStart, int[] unchangedLines)
+    {
+        for (int d = edits; d > 0; d--)
+        {
+            int[] previous = trace.get(d); //Frontier after d - 1 edits, holding diagonals -d - 1 to d + 1.
+            int previousOffset = d + 1;
+            int k = x - y;
+            int previousK;
+            if (k == -d || (k != d && previous[previousOffset + k - 1] < previous[previousOffset + k + 1]))
+            {
+                previousK = k + 1;
+            }
+            else
+            {
+                previousK = k - 1;
+            }
+            int previousX = previous[previousOffset + previousK];
+            int previousY = previousX - previousK;
+            while (x > previousX && y > previousY)
+            {
+                x--;
+                y--;
+                unchangedLines[aStart + x] = bStart + y;
+            }
+            x = previousX;
+            y = previousY;
+        }
+        while (x > 0 && y > 0)
+        {
+            x--;
+            y--;
+            unchangedLines[aStart + x] = bStart + y;
+        }
+    }
+}
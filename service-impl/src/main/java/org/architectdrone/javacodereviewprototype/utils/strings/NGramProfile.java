@@ -0,0 +1,77 @@
+package org.architectdrone.javacodereviewprototype.utils.strings;
+
+import lombok.Getter;
+
+/**
+ * The n-grams of a string, built once so that the string can be compared many times.
+ * <p>
+ * Profiles are created by {@link StringSimilarity#getProfile(String, int)}. Depending on the implementation, a profile
+ * may only remember the string itself, or may also hold its packed n-grams (see {@link #isPacked()}).
+ */
+public final class NGramProfile {
+    @Getter private final String value; //The string the profile was built from.
+    @Getter private final int n; //The "n" in "n-gram".
+    private final long[] packedNGrams; //Sorted, distinct, packed n-grams. Null if the n-grams were not packed.
+    private final long[] sketch; //See NGramSketch. Null if the profile is not packed, or too small to be worth sketching.
+
+    /**
+     * Creates a profile that only remembers the string.
+     * @param value The string
+     * @param n The "n" in "n-gram"
+     */
+    public NGramProfile(String value, int n)
+    {
+        this(value, n, null);
+    }
+
+    NGramProfile(String value, int n, long[] packedNGrams)
+    {
+        this.value = value;
+        this.n = n;
+        this.packedNGrams = packedNGrams;
+        this.sketch = packedNGrams == null ? null : NGramSketch.sketch(packedNGrams);
+    }
+
+    /**
+     * Creates a profile holding packed n-grams, if n is small enough to pack.
+     * @param value The string
+     * @param n The "n" in "n-gram"
+     * @return The profile.
+     */
+    static NGramProfile pack(String value, int n)
+    {
+        return new NGramProfile(value, n, PackedNGrams.canPack(n) ? PackedNGrams.profile(value, n) : null);
+    }
+
+    /**
+     * @return Whether this profile holds packed n-grams.
+     */
+    public boolean isPacked()
+    {
+        return packedNGrams != null;
+    }
+
+    /**
+     * @return The sorted, distinct, packed n-grams. Must not be modified. Null if the profile is not packed.
+     */
+    public long[] getPackedNGrams()
+    {
+        return packedNGrams;
+    }
+
+    /**
+     * @return The bitset sketch of the n-grams (see {@link NGramSketch}), or null if there is none.
+     */
+    long[] getSketch()
+    {
+        return sketch;
+    }
+
+    /**
+     * @return The number of distinct n-grams. Only available for packed profiles.
+     */
+    public int size()
+    {
+        return packedNGrams.length;
+    }
+}
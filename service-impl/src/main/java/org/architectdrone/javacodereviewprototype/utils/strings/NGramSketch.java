@@ -0,0 +1,86 @@
+package org.architectdrone.javacodereviewprototype.utils.strings;
+
+import org.architectdrone.javacodereviewprototype.utils.common.Hashing;
+
+/**
+ * Fixed width bitset sketches of packed n-grams, used to throw out pairs of strings before walking their n-grams.
+ * <p>
+ * Every n-gram sets one bit, chosen by hashing it. An n-gram shared by two strings sets the same bit in both sketches,
+ * so every bit that is set in a but not in b comes from at least one n-gram of a that b does not have. Counting those
+ * bits with {@link Long#bitCount(long)} gives an upper bound on the intersection, and so on the similarity, in a handful
+ * of word operations. The bound is never too low, so only pairs that cannot reach the minimum are thrown out.
+ * <p>
+ * Sketches are 256 to 1024 bits wide, depending on how many n-grams they hold. When two widths differ, the wider sketch
+ * is folded down to the narrower width, which keeps the bound valid because every width is a power of two.
+ */
+final class NGramSketch {
+    static final int MINIMUM_NGRAMS = 16; //Profiles with fewer n-grams are cheap enough to walk, and are not sketched.
+    private static final int MINIMUM_WORDS = 256 / Long.SIZE;
+    private static final int MAXIMUM_WORDS = 1024 / Long.SIZE;
+    private static final int BITS_PER_NGRAM = 4; //Sketch bits per n-gram, before clamping to the width limits.
+
+    private NGramSketch() {
+    }
+
+    /**
+     * Builds the sketch of a profile.
+     * @param packedNGrams Sorted, distinct, packed n-grams.
+     * @return The sketch, or null if there are too few n-grams to be worth sketching.
+     */
+    static long[] sketch(long[] packedNGrams)
+    {
+        if (packedNGrams.length < MINIMUM_NGRAMS)
+        {
+            return null;
+        }
+        int words = MINIMUM_WORDS;
+        while (words < MAXIMUM_WORDS && words * Long.SIZE < packedNGrams.length * BITS_PER_NGRAM)
+        {
+            words *= 2;
+        }
+        long[] sketch = new long[words];
+        int mask = words * Long.SIZE - 1;
+        for (long nGram : packedNGrams)
+        {
+            int bit = (int) Hashing.mix(nGram) & mask;
+            sketch[bit >>> 6] |= 1L << bit;
+        }
+        return sketch;
+    }
+
+    /**
+     * Gets an upper bound on the number of n-grams two sketched profiles share.
+     * @param a Sketch of the first profile
+     * @param aCount Number of n-grams in the first profile
+     * @param b Sketch of the second profile
+     * @param bCount Number of n-grams in the second profile
+     * @return A number that is never lower than the size of the intersection.
+     */
+    static int maximumIntersection(long[] a, int aCount, long[] b, int bCount)
+    {
+        int words = Math.min(a.length, b.length);
+        int onlyInA = 0;
+        int onlyInB = 0;
+        for (int i = 0; i < words; i++)
+        {
+            long x = fold(a, i, words);
+            long y = fold(b, i, words);
+            onlyInA += Long.bitCount(x & ~y);
+            onlyInB += Long.bitCount(y & ~x);
+        }
+        return Math.min(aCount - onlyInA, bCount - onlyInB);
+    }
+
+    /**
+     * @return Word i of the sketch, folded down to the given number of words.
+     */
+    private static long fold(long[] sketch, int i, int words)
+    {
+        long word = sketch[i];
+        for (int j = i + words; j < sketch.length; j += words)
+        {
+            word |= sketch[j];
+        }
+        return word;
+    }
+}
@@ -0,0 +1,296 @@
+package org.architectdrone.javacodereviewprototype.utils.strings;
+
+import java.util.Arrays;
+
+/**
+ * Allocation-free n-gram tools.
+ * <p>
+ * Every n-gram of at most {@link #MAX_N} characters fits into a single long: 16 bits per character, with the n-gram
+ * length stored above the characters so that "ab" and "\0ab" stay distinct. A string is then described by a sorted,
+ * de-duplicated long[] (its "profile"), and two profiles are compared by walking both arrays at once.
+ * <p>
+ * The scores are the same as {@link StringSimilarityImpl#getNGramsSimilarity}, that is 2 * |intersection| / |union|.
+ */
+final class PackedNGrams {
+    static final int MAX_N = 3; //Longest n-gram that fits into a long.
+    private static final int BITS_PER_CHAR = 16;
+    private static final int LENGTH_SHIFT = MAX_N * BITS_PER_CHAR;
+
+    //Per-thread buffers, so that comparing two strings does not create any garbage.
+    private static final ThreadLocal<long[][]> SCRATCH = ThreadLocal.withInitial(() -> new long[][]{new long[16], new long[16]});
+
+    private PackedNGrams() {
+    }
+
+    /**
+     * @param n The "n" in "n-gram"
+     * @return Whether n-grams of this size can be packed into a long.
+     */
+    static boolean canPack(int n)
+    {
+        return n > 0 && n <= MAX_N;
+    }
+
+    /**
+     * @param string The string to n-gram
+     * @param n The "n" in "n-gram"
+     * @return The number of slots needed to hold the n-grams of the string.
+     */
+    static int capacityFor(String string, int n)
+    {
+        return Math.max(1, string.length() - n + 1);
+    }
+
+    /**
+     * Writes the packed, sorted and de-duplicated n-grams of a string into a buffer.
+     * Like {@link StringSimilarityImpl#getNGrams}, a string shorter than n is a single n-gram.
+     * @param string The string to n-gram
+     * @param n the "n" in "n-gram". Must satisfy {@link #canPack(int)}.
+     * @param buffer Where to write the n-grams. Must hold at least {@link #capacityFor(String, int)} elements.
+     * @return The number of distinct n-grams written.
+     */
+    static int fill(String string, int n, long[] buffer)
+    {
+        int length = string.length();
+        if (length < n)
+        {
+            buffer[0] = pack(string, 0, length);
+            return 1;
+        }
+
+        long lengthBits = ((long) n) << LENGTH_SHIFT;
+        long charsMask = (1L << (n * BITS_PER_CHAR)) - 1;
+        long chars = 0;
+        for (int i = 0; i < n - 1; i++) {
+            chars = (chars << BITS_PER_CHAR) | string.charAt(i);
+        }
+        int count = 0;
+        for (int i = n - 1; i < length; i++) {
+            chars = ((chars << BITS_PER_CHAR) | string.charAt(i)) & charsMask;
+            buffer[count++] = lengthBits | chars;
+        }
+        return sortAndDeduplicate(buffer, count);
+    }
+
+    /**
+     * Creates a standalone profile for a string.
+     * @param string The string to n-gram
+     * @param n the "n" in "n-gram". Must satisfy {@link #canPack(int)}.
+     * @return The sorted, distinct, packed n-grams.
+     */
+    static long[] profile(String string, int n)
+    {
+        long[] buffer = new long[capacityFor(string, n)];
+        int count = fill(string, n, buffer);
+        return count == buffer.length ? buffer : Arrays.copyOf(buffer, count);
+    }
+
+    /**
+     * Gets the similarity of two strings without allocating.
+     * @param a The first string
+     * @param b The second string
+     * @param n The "n" in "n-gram". Must satisfy {@link #canPack(int)}.
+     * @return The similarity, 0 <= x <= 2.
+     */
+    static float similarity(String a, String b, int n)
+    {
+        long[][] scratch = SCRATCH.get();
+        if (scratch[0].length < capacityFor(a, n))
+        {
+            scratch[0] = new long[capacityFor(a, n) * 2];
+        }
+        if (scratch[1].length < capacityFor(b, n))
+        {
+            scratch[1] = new long[capacityFor(b, n) * 2];
+        }
+        int aCount = fill(a, n, scratch[0]);
+        int bCount = fill(b, n, scratch[1]);
+        return similarity(scratch[0], aCount, scratch[1], bCount);
+    }
+
+    /**
+     * Gets the similarity of two profiles.
+     * @param a Sorted, distinct n-grams of the first string
+     * @param aCount Number of n-grams in a
+     * @param b Sorted, distinct n-grams of the second string
+     * @param bCount Number of n-grams in b
+     * @return The similarity, 0 <= x <= 2.
+     */
+    static float similarity(long[] a, int aCount, long[] b, int bCount)
+    {
+        if (aCount == 0 && bCount == 0)
+        {
+            return 2;
+        }
+        int intersection = intersectionSize(a, aCount, b, bCount);
+        return score(intersection, aCount + bCount - intersection);
+    }
+
+    /**
+     * Gets the similarity of two strings without allocating, giving up as soon as the minimum similarity is out of reach.
+     * @param a The first string
+     * @param b The second string
+     * @param n The "n" in "n-gram". Must satisfy {@link #canPack(int)}.
+     * @param minimumSimilarity The similarity the caller is interested in.
+     * @return The similarity if it is at least minimumSimilarity, otherwise some upper bound below minimumSimilarity.
+     */
+    static float similarity(String a, String b, int n, float minimumSimilarity)
+    {
+        long[][] scratch = SCRATCH.get();
+        if (scratch[0].length < capacityFor(a, n))
+        {
+            scratch[0] = new long[capacityFor(a, n) * 2];
+        }
+        if (scratch[1].length < capacityFor(b, n))
+        {
+            scratch[1] = new long[capacityFor(b, n) * 2];
+        }
+        int aCount = fill(a, n, scratch[0]);
+        int bCount = fill(b, n, scratch[1]);
+        return similarity(scratch[0], aCount, scratch[1], bCount, minimumSimilarity);
+    }
+
+    /**
+     * Gets the similarity of two profiles, giving up as soon as the minimum similarity is out of reach.
+     * The intersection can be at most the size of the smaller profile, so pairs of very different sizes are rejected
+     * without walking them at all. While walking, every n-gram that is not shared lowers how large the intersection can
+     * still get, and the walk stops once that is too small.
+     * @param a Sorted, distinct n-grams of the first string
+     * @param aCount Number of n-grams in a
+     * @param b Sorted, distinct n-grams of the second string
+     * @param bCount Number of n-grams in b
+     * @param minimumSimilarity The similarity the caller is interested in.
+     * @return The similarity if it is at least minimumSimilarity, otherwise some upper bound below minimumSimilarity.
+     */
+    static float similarity(long[] a, int aCount, long[] b, int bCount, float minimumSimilarity)
+    {
+        if (aCount == 0 && bCount == 0)
+        {
+            return 2;
+        }
+        int total = aCount + bCount;
+        int maximumIntersection = Math.min(aCount, bCount);
+        int requiredIntersection = getRequiredIntersection(total, maximumIntersection, minimumSimilarity);
+        if (requiredIntersection > maximumIntersection)
+        {
+            return score(maximumIntersection, total - maximumIntersection);
+        }
+
+        int i = 0;
+        int j = 0;
+        int intersection = 0;
+        while (i < aCount && j < bCount)
+        {
+            long x = a[i];
+            long y = b[j];
+            if (x == y)
+            {
+                intersection++;
+                i++;
+                j++;
+                continue;
+            }
+            if (x < y)
+            {
+                i++;
+            }
+            else
+            {
+                j++;
+            }
+            int reachableIntersection = intersection + Math.min(aCount - i, bCount - j);
+            if (reachableIntersection < requiredIntersection)
+            {
+                return score(reachableIntersection, total - reachableIntersection);
+            }
+        }
+        return score(intersection, total - intersection);
+    }
+
+    /**
+     * Finds the smallest intersection whose score is at least the minimum similarity.
+     * @param total Sum of the sizes of both profiles.
+     * @param maximumIntersection Size of the smaller profile.
+     * @param minimumSimilarity The minimum similarity.
+     * @return The smallest sufficient intersection, or maximumIntersection + 1 if there is none.
+     */
+    private static int getRequiredIntersection(int total, int maximumIntersection, float minimumSimilarity)
+    {
+        if (minimumSimilarity <= 0)
+        {
+            return 0;
+        }
+        //Solve 2i / (total - i) = minimumSimilarity, then adjust, so that the answer agrees with score() to the last bit.
+        int required = (int) Math.ceil(minimumSimilarity * total / (2 + minimumSimilarity));
+        required = Math.max(0, Math.min(required, maximumIntersection + 1));
+        while (required > 0 && score(required - 1, total - required + 1) >= minimumSimilarity)
+        {
+            required--;
+        }
+        while (required <= maximumIntersection && score(required, total - required) < minimumSimilarity)
+        {
+            required++;
+        }
+        return required;
+    }
+
+    /**
+     * Counts the n-grams two profiles have in common by walking both at once.
+     */
+    static int intersectionSize(long[] a, int aCount, long[] b, int bCount)
+    {
+        int i = 0;
+        int j = 0;
+        int intersection = 0;
+        while (i < aCount && j < bCount)
+        {
+            long x = a[i];
+            long y = b[j];
+            if (x == y)
+            {
+                intersection++;
+                i++;
+                j++;
+            }
+            else if (x < y)
+            {
+                i++;
+            }
+            else
+            {
+                j++;
+            }
+        }
+        return intersection;
+    }
+
+    /**
+     * Turns an intersection and union size into a similarity score, exactly as {@link StringSimilarityImpl#getNGramsSimilarity} does.
+     */
+    static float score(int intersection, int union)
+    {
+        return (float) (2 * intersection) / union;
+    }
+
+    private static long pack(String string, int from, int length)
+    {
+        long packed = ((long) length) << LENGTH_SHIFT;
+        for (int i = 0; i < length; i++) {
+            packed |= ((long) string.charAt(from + i)) << (BITS_PER_CHAR * (length - 1 - i));
+        }
+        return packed;
+    }
+
+    private static int sortAndDeduplicate(long[] buffer, int count)
+    {
+        Arrays.sort(buffer, 0, count);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || buffer[distinct - 1] != buffer[i])
+            {
+                buffer[distinct++] = buffer[i];
+            }
+        }
+        return distinct;
+    }
+}
@@ -13,4 +13,55 @@ public interface StringSimilarity {
      * @return The similarity.
      */
     float getStringSimilarity(String a, String b, int n);
+
+    /**
+     * Builds the n-gram profile of a string, so that it can be compared many times without being n-grammed again.
+     * @param string The string
+     * @param n The "n" in "n-gram"
+     * @return The profile.
+     */
+    default NGramProfile getProfile(String string, int n)
+    {
+        return new NGramProfile(string, n);
+    }
+
+    /**
+     * Gets string similarity of two profiles. Both must have been built with the same n.
+     * Will be 0 <= x <= 2.
+     * @param a The profile of the first string
+     * @param b The profile of the second string
+     * @return The similarity.
+     */
+    default float getStringSimilarity(NGramProfile a, NGramProfile b)
+    {
+        assert a.getN() == b.getN();
+        return getStringSimilarity(a.getValue(), b.getValue(), a.getN());
+    }
+
+    /**
+     * Gets string similarity, for callers that only care about similarities of at least some minimum.
+     * Implementations may give up early once the minimum is out of reach.
+     * @param a The first string
+     * @param b The second string
+     * @param n The "n" in "n-gram"
+     * @param minimumSimilarity The similarity the caller is interested in.
+     * @return The similarity if it is at least minimumSimilarity, otherwise some value below minimumSimilarity.
+     */
+    default float getStringSimilarity(String a, String b, int n, float minimumSimilarity)
+    {
+        return getStringSimilarity(a, b, n);
+    }
+
+    /**
+     * Gets string similarity of two profiles, for callers that only care about similarities of at least some minimum.
+     * Implementations may give up early once the minimum is out of reach.
+     * @param a The profile of the first string
+     * @param b The profile of the second string
+     * @param minimumSimilarity The similarity the caller is interested in.
+     * @return The similarity if it is at least minimumSimilarity, otherwise some value below minimumSimilarity.
+     */
+    default float getStringSimilarity(NGramProfile a, NGramProfile b, float minimumSimilarity)
+    {
+        return getStringSimilarity(a, b);
+    }
 }
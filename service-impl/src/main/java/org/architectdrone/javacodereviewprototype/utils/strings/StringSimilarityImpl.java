@@ -63,6 +63,7 @@ public class StringSimilarityImpl implements StringSimilarity {
     /**
      * Gets string similarity using n-gram method.
      * Will be 0 <= x <= 2.
+     * Small n-grams are packed into longs (see {@link PackedNGrams}), so this does not allocate. Larger n-grams fall back to {@link #getNGrams}.
      * @param a The first string
      * @param b The second string
      * @param n The "n" in "n-gram"
@@ -71,6 +72,86 @@ public class StringSimilarityImpl implements StringSimilarity {
     @Override
     public float getStringSimilarity(String a, String b, int n)
     {
+        if (PackedNGrams.canPack(n))
+        {
+            return PackedNGrams.similarity(a, b, n);
+        }
         return getNGramsSimilarity(getNGrams(a, n), getNGrams(b, n));
     }
+
+    /**
+     * Builds a profile holding the packed n-grams of the string, when n is small enough to pack.
+     * @param string The string
+     * @param n The "n" in "n-gram"
+     * @return The profile.
+     */
+    @Override
+    public NGramProfile getProfile(String string, int n)
+    {
+        return NGramProfile.pack(string, n);
+    }
+
+    /**
+     * Gets string similarity of two profiles, by walking their packed n-grams if they have them.
+     * Will be 0 <= x <= 2.
+     * @param a The profile of the first string
+     * @param b The profile of the second string
+     * @return The similarity.
+     */
+    @Override
+    public float getStringSimilarity(NGramProfile a, NGramProfile b)
+    {
+        assert a.getN() == b.getN();
+        if (a.isPacked() && b.isPacked())
+        {
+            return PackedNGrams.similarity(a.getPackedNGrams(), a.size(), b.getPackedNGrams(), b.size());
+        }
+        return getStringSimilarity(a.getValue(), b.getValue(), a.getN());
+    }
+
+    /**
+     * Gets string similarity, giving up once minimumSimilarity is out of reach (see {@link PackedNGrams#similarity(long[], int, long[], int, float)}).
+     * @param a The first string
+     * @param b The second string
+     * @param n The "n" in "n-gram"
+     * @param minimumSimilarity The similarity the caller is interested in.
+     * @return The similarity if it is at least minimumSimilarity, otherwise some value below minimumSimilarity.
+     */
+    @Override
+    public float getStringSimilarity(String a, String b, int n, float minimumSimilarity)
+    {
+        if (PackedNGrams.canPack(n))
+        {
+            return PackedNGrams.similarity(a, b, n, minimumSimilarity);
+        }
+        return getStringSimilarity(a, b, n);
+    }
+
+    /**
+     * Gets string similarity of two profiles, giving up once minimumSimilarity is out of reach (see {@link PackedNGrams#similarity(long[], int, long[], int, float)}).
+     * Long values are first screened by their sketches (see {@link NGramSketch}), and only walked if they survive.
+     * @param a The profile of the first string
+     * @param b The profile of the second string
+     * @param minimumSimilarity The similarity the caller is interested in.
+     * @return The similarity if it is at least minimumSimilarity, otherwise some value below minimumSimilarity.
+     */
+    @Override
+    public float getStringSimilarity(NGramProfile a, NGramProfile b, float minimumSimilarity)
+    {
+        assert a.getN() == b.getN();
+        if (a.isPacked() && b.isPacked())
+        {
+            if (minimumSimilarity > 0 && a.getSketch() != null && b.getSketch() != null)
+            {
+                int maximumIntersection = NGramSketch.maximumIntersection(a.getSketch(), a.size(), b.getSketch(), b.size());
+                float maximumSimilarity = PackedNGrams.score(maximumIntersection, a.size() + b.size() - maximumIntersection);
+                if (maximumSimilarity < minimumSimilarity)
+                {
+                    return maximumSimilarity;
+                }
+            }
+            return PackedNGrams.similarity(a.getPackedNGrams(), a.size(), b.getPackedNGrams(), b.size(), minimumSimilarity);
+        }
+        return getStringSimilarity(a.getValue(), b.getValue(), a.getN(), minimumSimilarity);
+    }
 }
@@ -3,6 +3,7 @@ package org.architectdrone.javacodereviewprototype.java;
 import com.github.javaparser.StaticJavaParser;
 import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.Modifier;
+import com.github.javaparser.ast.Node;
 import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
 import com.github.javaparser.ast.expr.AssignExpr;
 import com.github.javaparser.ast.expr.BinaryExpr;
@@ -14,6 +15,8 @@ import com.github.javaparser.ast.expr.UnaryExpr;
 import com.github.javaparser.ast.type.PrimitiveType;
 import java.util.Collections;
 import org.architectdrone.javacodereviewprototype.tree.ChangeDistillationTreeMatchImpl;
+import org.architectdrone.javacodereviewprototype.tree.DiffTree;
+import org.architectdrone.javacodereviewprototype.tree.SymbolTable;
 import org.architectdrone.javacodereviewprototype.utils.common.CommonUtilsImpl;
 import org.architectdrone.javacodereviewprototype.utils.strings.StringSimilarityImpl;
 import org.junit.jupiter.api.Nested;
@@ -53,6 +56,29 @@ class JavaTreeTest {
         assertEquals(ClassOrInterfaceDeclaration.class, classJavaTree.getLabel());
     }
 
+    @Test
+    void whenSymbolTableIsShared_identicalValuesShareIds()
+    {
+        String file = ClassMockFactory
+                .builder()
+                .method(MethodMock
+                        .builder()
+                        .bodyA(true)
+                        .build())
+                .build()
+                .getClassMock();
+        SymbolTable<Class<Node>> symbolTable = new SymbolTable<>();
+        JavaTree treeA = new JavaTree(StaticJavaParser.parse(file), true, symbolTable);
+        JavaTree treeB = new JavaTree(StaticJavaParser.parse(file), false, symbolTable);
+
+        DiffTree<Class<Node>> classA = treeA.getChildren().get(0);
+        DiffTree<Class<Node>> classB = treeB.getChildren().get(0);
+        assertEquals(classA.getLabelId(), classB.getLabelId());
+        assertEquals(classA.getValueId(), classB.getValueId());
+        assertSame(classA.getValue(), classB.getValue());
+        assertTrue(treeA.treeEquals(treeB));
+    }
+
     @Nested
     class ConstructorTests
     {
@@ -0,0 +1,65 @@
+package org.architectdrone.javacodereviewprototype.java;
+
+import com.github.javaparser.StaticJavaParser;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import org.architectdrone.javacodereviewprototype.tree.DiffTree;
+import org.architectdrone.javacodereviewprototype.tree.SymbolTable;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LineAnchoringTest {
+    private static final String FILE_A = "public class MyClass {\n" +
+            "    void a() {\n" +
+            "        int x = 1;\n" +
+            "    }\n" +
+            "    void b() {\n" +
+            "        int y = 2;\n" +
+            "    }\n" +
+            "}\n";
+
+    private static final String FILE_B = "public class MyClass {\n" +
+            "    int z;\n" +
+            "    void a() {\n" +
+            "        int x = 1;\n" +
+            "    }\n" +
+            "    void b() {\n" +
+            "        int y = 3;\n" +
+            "    }\n" +
+            "}\n";
+
+    @Test
+    void nodesInUnchangedLines_areMatchedByPosition_andNodesInChangedLinesAreNot() {
+        SymbolTable<Class<com.github.javaparser.ast.Node>> symbolTable = new SymbolTable<>();
+        JavaTree treeA = new JavaTree(StaticJavaParser.parse(FILE_A), true, symbolTable);
+        JavaTree treeB = new JavaTree(StaticJavaParser.parse(FILE_B), false, symbolTable);
+
+        int matched = LineAnchoring.matchUnchangedLines(treeA, treeB, FILE_A, FILE_B, 100);
+
+        JavaTree methodA = getMethod(treeA, "a");
+        JavaTree methodB = getMethod(treeA, "b");
+        assertTrue(matched > 0);
+        assertSame(getMethod(treeB, "a"), methodA.getMatch());
+        for (DiffTree<Class<com.github.javaparser.ast.Node>> descendant : methodA.getDescendants(true)) {
+            assertTrue(descendant.isMatched());
+        }
+        assertFalse(methodB.isMatched());
+        assertFalse(treeA.isMatched());
+    }
+
+    @Test
+    void whenTheFilesDifferTooMuch_nothingIsMatched() {
+        JavaTree treeA = new JavaTree(StaticJavaParser.parse(FILE_A), true);
+        JavaTree treeB = new JavaTree(StaticJavaParser.parse(FILE_B), false);
+
+        assertEquals(0, LineAnchoring.matchUnchangedLines(treeA, treeB, FILE_A, FILE_B, 1));
+        assertFalse(getMethod(treeA, "a").isMatched());
+    }
+
+    private static JavaTree getMethod(JavaTree tree, String name) {
+        return (JavaTree) tree.getDescendants(false).stream()
+                .filter(node -> node.getLabel() == (Class<?>) MethodDeclaration.class && node.getValue().equals(name))
+                .findFirst()
+                .orElseThrow(AssertionError::new);
+    }
+}
@@ -0,0 +1,122 @@
+package org.architectdrone.javacodereviewprototype.java;
+
+import com.github.javaparser.StaticJavaParser;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
+import com.github.javaparser.ast.body.FieldDeclaration;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import java.util.List;
+import org.architectdrone.javacodereviewprototype.tree.ChangeDistillationTreeMatchImpl;
+import org.architectdrone.javacodereviewprototype.tree.DiffTree;
+import org.architectdrone.javacodereviewprototype.tree.MatchConfig;
+import org.architectdrone.javacodereviewprototype.tree.SymbolTable;
+import org.architectdrone.javacodereviewprototype.utils.common.CommonUtilsImpl;
+import org.architectdrone.javacodereviewprototype.utils.strings.CachingStringSimilarity;
+import org.architectdrone.javacodereviewprototype.utils.strings.StringSimilarityImpl;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MemberPartitioningTest {
+    private static final String FILE_A = "public class MyClass {\n" +
+            "    int count;\n" +
+            "    void add(int x) { count = count + x; }\n" +
+            "    void add(String x) { count = count + x.length(); }\n" +
+            "    int computeTotal() { return count * 2; }\n" +
+            "    class Inner { void run() { add(1); } }\n" +
+            "}\n";
+
+    private static final String FILE_B = "public class MyClass {\n" +
+            "    class Inner { void run() { add(2); } }\n" +
+            "    int computeTotals() { return count * 3; }\n" +
+            "    void add(String x) { count = count + x.length() + 1; }\n" +
+            "    void add(int x) { count = count - x; }\n" +
+            "    int count;\n" +
+            "}\n";
+
+    @Test
+    void membersArePairedBySignatureNameAndSimilarName() {
+        JavaTree[] trees = matchMembers(1);
+        JavaTree treeA = trees[0];
+        JavaTree treeB = trees[1];
+
+        assertSame(getMember(treeB, MethodDeclaration.class, "add", 1), getMember(treeA, MethodDeclaration.class, "add", 0).getMatch());
+        assertSame(getMember(treeB, MethodDeclaration.class, "add", 0), getMember(treeA, MethodDeclaration.class, "add", 1).getMatch());
+        assertSame(getMember(treeB, MethodDeclaration.class, "computeTotals", 0), getMember(treeA, MethodDeclaration.class, "computeTotal", 0).getMatch());
+        assertSame(getMember(treeB, FieldDeclaration.class, "", 0), getMember(treeA, FieldDeclaration.class, "", 0).getMatch());
+        assertSame(getMember(treeB, ClassOrInterfaceDeclaration.class, "Inner", 0), getMember(treeA, ClassOrInterfaceDeclaration.class, "Inner", 0).getMatch());
+        assertSame(getMember(treeB, MethodDeclaration.class, "run", 0), getMember(treeA, MethodDeclaration.class, "run", 0).getMatch());
+    }
+
+    @Test
+    void nodesInsideMembers_areMatchedWithNodesOfTheirPartner() {
+        JavaTree[] trees = matchMembers(1);
+        JavaTree addA = getMember(trees[0], MethodDeclaration.class, "add", 0);
+        JavaTree addB = getMember(trees[1], MethodDeclaration.class, "add", 1);
+
+        for (DiffTree<Class<Node>> leaf : addA.getLeaves()) {
+            if (leaf.isMatched()) {
+                assertTrue(addB.getDescendants(true).contains(leaf.getMatch()));
+            }
+        }
+        assertTrue(addA.getLeaves().stream().anyMatch(DiffTree::isMatched));
+    }
+
+    @Test
+    void inParallel_givesTheSameMatches() {
+        JavaTree[] sequential = matchMembers(1);
+        JavaTree[] parallel = matchMembers(4);
+
+        List<DiffTree<Class<Node>>> sequentialNodes = sequential[0].getDescendants(true);
+        List<DiffTree<Class<Node>>> parallelNodes = parallel[0].getDescendants(true);
+        List<DiffTree<Class<Node>>> sequentialNodesB = sequential[1].getDescendants(true);
+        List<DiffTree<Class<Node>>> parallelNodesB = parallel[1].getDescendants(true);
+        for (int i = 0; i < sequentialNodes.size(); i++) {
+            DiffTree<Class<Node>> match = sequentialNodes.get(i).getMatch();
+            DiffTree<Class<Node>> parallelMatch = parallelNodes.get(i).getMatch();
+            assertEquals(match == null ? -1 : sequentialNodesB.indexOf(match), parallelMatch == null ? -1 : parallelNodesB.indexOf(parallelMatch));
+        }
+    }
+
+    @Test
+    void namesBelowTheConfiguredSimilarity_areNotPaired() {
+        JavaTree[] trees = matchMembers(MatchConfig.builder().memberPartitioning(true).memberNameSimilarityThreshold(100).build());
+
+        assertFalse(getMember(trees[0], MethodDeclaration.class, "computeTotal", 0).isMatched());
+        assertSame(getMember(trees[1], MethodDeclaration.class, "add", 1), getMember(trees[0], MethodDeclaration.class, "add", 0).getMatch());
+    }
+
+    @Test
+    void theWholeTreesCanBeMatchedAfterwards() {
+        JavaTree[] trees = matchMembers(1);
+        ChangeDistillationTreeMatchImpl treeMatch = new ChangeDistillationTreeMatchImpl(new StringSimilarityImpl(new CommonUtilsImpl()), new CommonUtilsImpl());
+
+        treeMatch.matchTrees(trees[0], trees[1]);
+
+        assertSame(trees[1], trees[0].getMatch());
+        assertSame(getMember(trees[1], MethodDeclaration.class, "add", 1), getMember(trees[0], MethodDeclaration.class, "add", 0).getMatch());
+    }
+
+    private static JavaTree[] matchMembers(int parallelism) {
+        return matchMembers(MatchConfig.builder().memberPartitioning(true).memberMatchingParallelism(parallelism).build());
+    }
+
+    private static JavaTree[] matchMembers(MatchConfig matchConfig) {
+        StringSimilarityImpl stringSimilarity = new StringSimilarityImpl(new CommonUtilsImpl());
+        ChangeDistillationTreeMatchImpl treeMatch = new ChangeDistillationTreeMatchImpl(stringSimilarity, new CommonUtilsImpl(), matchConfig);
+        SymbolTable<Class<Node>> symbolTable = new SymbolTable<>();
+        JavaTree treeA = new JavaTree(StaticJavaParser.parse(FILE_A), true, symbolTable);
+        JavaTree treeB = new JavaTree(StaticJavaParser.parse(FILE_B), false, symbolTable);
+
+        new MemberPartitioning(treeMatch, new CachingStringSimilarity(stringSimilarity), matchConfig).matchMembers(treeA, treeB);
+        return new JavaTree[]{treeA, treeB};
+    }
+
+    private static JavaTree getMember(JavaTree tree, Class<?> label, String name, int index) {
+        return (JavaTree) tree.getDescendants(false).stream()
+                .filter(node -> node.getLabel() == label && node.getValue().equals(name))
+                .skip(index)
+                .findFirst()
+                .orElseThrow(AssertionError::new);
+    }
+}
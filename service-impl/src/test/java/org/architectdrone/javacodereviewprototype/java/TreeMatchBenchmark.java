@@ -0,0 +1,189 @@
+package org.architectdrone.javacodereviewprototype.java;
+
+import com.github.javaparser.StaticJavaParser;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.BodyDeclaration;
+import com.github.javaparser.ast.body.TypeDeclaration;
+import com.github.javaparser.ast.stmt.BlockStmt;
+import com.github.javaparser.ast.stmt.Statement;
+import com.google.inject.Guice;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.architectdrone.javacodereviewprototype.dependencyinjection.DefaultModule;
+import org.architectdrone.javacodereviewprototype.tree.DiffTree;
+import org.architectdrone.javacodereviewprototype.tree.MatchConfig;
+import org.architectdrone.javacodereviewprototype.tree.SymbolTable;
+import org.architectdrone.javacodereviewprototype.tree.TreeMatch;
+import org.architectdrone.javacodereviewprototype.tree.TreeMatchAlgorithm;
+
+/**
+ * Compares the {@link TreeMatch} implementations on the same inputs, for time, allocated memory and edit script size.
+ * Not a test, so it is not run by the build. Run its main method with pairs of files (original, modified), or with no
+ * arguments to diff every source file of this project against a copy with some statements removed and a member moved.
+ * <p>
+ * The edit script size is the number of deleted, inserted, updated and moved nodes implied by the matches. Smaller is
+ * better: a matcher that misses matches has to explain the difference with more edits.
+ */
+public class TreeMatchBenchmark {
+    private static final int WARMUP_RUNS = 2;
+    private static final int MEASURED_RUNS = 5;
+    private static final long SEED = 42;
+
+    public static void main(String[] args) throws IOException
+    {
+        List<String[]> inputs = args.length == 0 ? getDefaultInputs() : getInputs(args);
+        System.out.printf("%-20s %8s %12s %14s %12s%n", "Algorithm", "Files", "Time (ms)", "Memory (MB)", "Edits");
+        for (TreeMatchAlgorithm algorithm : TreeMatchAlgorithm.values())
+        {
+            TreeMatch treeMatch = Guice.createInjector(new DefaultModule(MatchConfig.builder().treeMatchAlgorithm(algorithm).build()))
+                    .getInstance(TreeMatch.class);
+            for (int run = 0; run < WARMUP_RUNS; run++)
+            {
+                runOnce(treeMatch, inputs);
+            }
+            long[] best = null;
+            for (int run = 0; run < MEASURED_RUNS; run++)
+            {
+                long[] result = runOnce(treeMatch, inputs);
+                if (best == null || result[0] < best[0])
+                {
+                    best = result;
+                }
+            }
+            System.out.printf("%-20s %8d %12.1f %14.1f %12d%n", algorithm, inputs.size(), best[0] / 1e6, best[1] / 1e6, best[2]);
+        }
+    }
+
+    /**
+     * @return Time in nanoseconds, allocated bytes, and edit script size, summed over the inputs.
+     */
+    private static long[] runOnce(TreeMatch treeMatch, List<String[]> inputs)
+    {
+        long[] total = new long[3];
+        for (String[] input : inputs)
+        {
+            SymbolTable<Class<Node>> symbolTable = new SymbolTable<>();
+            JavaTree treeA = new JavaTree(StaticJavaParser.parse(input[0]), true, symbolTable);
+            JavaTree treeB = new JavaTree(StaticJavaParser.parse(input[1]), false, symbolTable);
+            long allocatedBefore = getAllocatedBytes();
+            long start = System.nanoTime();
+            treeMatch.matchTrees(treeA, treeB);
+            total[0] += System.nanoTime() - start;
+            total[1] += getAllocatedBytes() - allocatedBefore;
+            total[2] += getEditScriptSize(treeA, treeB);
+        }
+        return total;
+    }
+
+    static <L> int getEditScriptSize(DiffTree<L> treeA, DiffTree<L> treeB)
+    {
+        int edits = 0;
+        for (int i = 0; i < treeA.getSubtreeSize(); i++)
+        {
+            DiffTree<L> node = treeA.getNodeByPreorderNumber(i);
+            if (!node.isMatched())
+            {
+                edits++; //Deleted
+                continue;
+            }
+            if (!node.hasSameValue(node.getMatch()))
+            {
+                edits++; //Updated
+            }
+            DiffTree<L> parent = node.getParent();
+            DiffTree<L> matchParent = node.getMatch().getParent();
+            if (parent != null && (matchParent == null || parent.getMatch() != matchParent))
+            {
+                edits++; //Moved
+            }
+        }
+        for (int i = 0; i < treeB.getSubtreeSize(); i++)
+        {
+            if (!treeB.getNodeByPreorderNumber(i).isMatched())
+            {
+                edits++; //Inserted
+            }
+        }
+        return edits;
+    }
+
+    private static long getAllocatedBytes()
+    {
+        java.lang.management.ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (threadMXBean instanceof com.sun.management.ThreadMXBean)
+        {
+            return ((com.sun.management.ThreadMXBean) threadMXBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static List<String[]> getInputs(String[] args) throws IOException
+    {
+        if (args.length % 2 != 0)
+        {
+            throw new IllegalArgumentException("Files must be given in pairs: original, modified.");
+        }
+        List<String[]> inputs = new ArrayList<>();
+        for (int i = 0; i < args.length; i += 2)
+        {
+            inputs.add(new String[]{read(Paths.get(args[i])), read(Paths.get(args[i + 1]))});
+        }
+        return inputs;
+    }
+
+    private static List<String[]> getDefaultInputs() throws IOException
+    {
+        List<Path> files;
+        try (Stream<Path> paths = Files.walk(Paths.get("src", "main", "java")))
+        {
+            files = paths.filter(path -> path.toString().endsWith(".java")).sorted().collect(Collectors.toList());
+        }
+        Random random = new Random(SEED);
+        List<String[]> inputs = new ArrayList<>();
+        for (Path file : files)
+        {
+            CompilationUnit original = StaticJavaParser.parse(read(file));
+            inputs.add(new String[]{original.toString(), modify(original.clone(), random).toString()});
+        }
+        return inputs;
+    }
+
+    /**
+     * Removes about a tenth of the statements of every block, and moves the last member of every type to the top.
+     */
+    private static CompilationUnit modify(CompilationUnit compilationUnit, Random random)
+    {
+        for (BlockStmt block : compilationUnit.findAll(BlockStmt.class))
+        {
+            List<Statement> removed = block.getStatements().stream()
+                    .filter(statement -> random.nextInt(10) == 0)
+                    .collect(Collectors.toList());
+            removed.forEach(block::remove);
+        }
+        for (TypeDeclaration<?> type : compilationUnit.findAll(TypeDeclaration.class))
+        {
+            if (type.getMembers().size() > 1)
+            {
+                BodyDeclaration<?> last = type.getMembers().removeLast();
+                type.getMembers().addFirst(last);
+            }
+        }
+        return compilationUnit;
+    }
+
+    private static String read(Path file) throws IOException
+    {
+        return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,102 @@
+package org.architectdrone.javacodereviewprototype.tree;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import java.util.List;
+import org.architectdrone.javacodereviewprototype.dependencyinjection.DefaultModule;
+import org.architectdrone.javacodereviewprototype.utils.common.CommonUtils;
+import org.architectdrone.javacodereviewprototype.utils.common.CommonUtilsImpl;
+import org.architectdrone.javacodereviewprototype.utils.strings.StringSimilarity;
+import org.architectdrone.javacodereviewprototype.utils.strings.StringSimilarityImpl;
+import org.junit.jupiter.api.Test;
+
+import static org.architectdrone.javacodereviewprototype.tree.DiffTreeFixtures.getBlockTree;
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveTreeMatchImplTest {
+    CommonUtils commonUtils = new CommonUtilsImpl();
+    StringSimilarity stringSimilarity = new StringSimilarityImpl(commonUtils);
+
+    private AdaptiveTreeMatchImpl getAdaptiveTreeMatch(MatchConfig matchConfig) {
+        return new AdaptiveTreeMatchImpl(stringSimilarity, commonUtils, matchConfig);
+    }
+
+    @Test
+    void selectStrategy_picksTheCheapestAdequateStrategy() {
+        AdaptiveTreeMatchImpl adaptiveTreeMatch = getAdaptiveTreeMatch(MatchConfig.builder()
+                .adaptiveExactTreeMaximumSize(10)
+                .adaptiveHashingCandidatePairs(100)
+                .build());
+
+        assertEquals(MatchStrategy.EXACT, adaptiveTreeMatch.selectStrategy(10, 5, 1000));
+        assertEquals(MatchStrategy.CHANGE_DISTILLING, adaptiveTreeMatch.selectStrategy(11, 5, 100));
+        assertEquals(MatchStrategy.HASHING, adaptiveTreeMatch.selectStrategy(11, 5, 101));
+    }
+
+    @Test
+    void smallTrees_areMatchedExactly_andRecorded() {
+        DiffTree<String> treeA = getBlockTree(true, "first", "second", "third");
+        DiffTree<String> treeB = getBlockTree(false, "first", "second", "fourth");
+        AdaptiveTreeMatchImpl adaptiveTreeMatch = getAdaptiveTreeMatch(MatchConfig.DEFAULT);
+
+        adaptiveTreeMatch.matchTrees(treeA, treeB);
+
+        assertEquals(treeB.getLeaves().get(0), treeA.getLeaves().get(0).getMatch());
+        assertEquals(treeB.getLeaves().get(1), treeA.getLeaves().get(1).getMatch());
+        assertFalse(treeA.getLeaves().get(2).isMatched());
+        List<MatchRecord> records = adaptiveTreeMatch.getRecentRecords();
+        assertEquals(1, records.size());
+        assertEquals(MatchStrategy.EXACT, records.get(0).getStrategy());
+        assertEquals(5, records.get(0).getNodeCountA());
+        assertEquals(9, records.get(0).getEstimatedCandidatePairs());
+    }
+
+    @Test
+    void largerTrees_areMatchedWithChangeDistillingOrHashing() {
+        AdaptiveTreeMatchImpl adaptiveTreeMatch = getAdaptiveTreeMatch(MatchConfig.builder()
+                .adaptiveExactTreeMaximumSize(0)
+                .adaptiveHashingCandidatePairs(4)
+                .build());
+
+        adaptiveTreeMatch.matchTrees(getBlockTree(true, "first", "second"), getBlockTree(false, "first", "second"));
+        DiffTree<String> treeA = getBlockTree(true, "first", "second", "third");
+        DiffTree<String> treeB = getBlockTree(false, "first", "second", "third");
+        adaptiveTreeMatch.matchTrees(treeA, treeB);
+
+        assertEquals(treeB.getLeaves().get(2), treeA.getLeaves().get(2).getMatch());
+        List<MatchRecord> records = adaptiveTreeMatch.getRecentRecords();
+        assertEquals(MatchStrategy.CHANGE_DISTILLING, records.get(0).getStrategy());
+        assertEquals(MatchStrategy.HASHING, records.get(1).getStrategy());
+    }
+
+    @Test
+    void onlyTheMostRecentRecordsAreKept() {
+        AdaptiveTreeMatchImpl adaptiveTreeMatch = getAdaptiveTreeMatch(MatchConfig.DEFAULT);
+
+        for (int i = 0; i < 150; i++) {
+            adaptiveTreeMatch.matchTrees(getBlockTree(true, "value"), getBlockTree(false, "value"));
+        }
+
+        assertEquals(100, adaptiveTreeMatch.getRecentRecords().size());
+    }
+
+    @Test
+    void subtreeRecords_doNotPushOutWholeTreeRecords() {
+        AdaptiveTreeMatchImpl adaptiveTreeMatch = getAdaptiveTreeMatch(MatchConfig.DEFAULT);
+
+        adaptiveTreeMatch.matchTrees(getBlockTree(true, "value"), getBlockTree(false, "value"));
+        for (int i = 0; i < 150; i++) {
+            adaptiveTreeMatch.matchSubtrees(getBlockTree(true, "value"), getBlockTree(false, "value"));
+        }
+
+        assertEquals(1, adaptiveTreeMatch.getRecentRecords().size());
+        assertEquals(100, adaptiveTreeMatch.getRecentSubtreeRecords().size());
+    }
+
+    @Test
+    void defaultModule_sharesOneAdaptiveTreeMatch() {
+        Injector injector = Guice.createInjector(new DefaultModule(MatchConfig.builder().treeMatchAlgorithm(TreeMatchAlgorithm.ADAPTIVE).build()));
+
+        assertSame(injector.getInstance(AdaptiveTreeMatchImpl.class), injector.getInstance(TreeMatch.class));
+    }
+}
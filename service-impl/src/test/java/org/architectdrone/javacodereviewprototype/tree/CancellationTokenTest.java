@@ -0,0 +1,46 @@
+package org.architectdrone.javacodereviewprototype.tree;
+
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CancellationTokenTest {
+    @Test
+    void isCancelled_onlyOnceCancelled() {
+        CancellationToken cancellationToken = new CancellationToken();
+        assertFalse(cancellationToken.isCancelled());
+
+        cancellationToken.cancel();
+
+        assertTrue(cancellationToken.isCancelled());
+    }
+
+    @Test
+    void isCancelled_onceTheDeadlinePasses() {
+        assertTrue(CancellationToken.withTimeout(Duration.ZERO).isCancelled());
+        assertFalse(CancellationToken.withTimeout(Duration.ofHours(1)).isCancelled());
+    }
+
+    @Test
+    void tokensWithADeadline_canAlsoBeCancelled() {
+        CancellationToken cancellationToken = CancellationToken.withTimeout(Duration.ofHours(1));
+
+        cancellationToken.cancel();
+
+        assertTrue(cancellationToken.isCancelled());
+    }
+
+    @Test
+    void runTokens_onlyReportStoppedWork_onceACheckSawTheCancellation() {
+        CancellationToken cancellationToken = new CancellationToken();
+        CancellationToken run = cancellationToken.forRun();
+        assertFalse(run.isCancelled());
+
+        cancellationToken.cancel();
+
+        assertFalse(run.hasStoppedWork());
+        assertTrue(run.isCancelled());
+        assertTrue(run.hasStoppedWork());
+    }
+}
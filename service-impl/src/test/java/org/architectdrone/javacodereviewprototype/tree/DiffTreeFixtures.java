@@ -0,0 +1,40 @@
+package org.architectdrone.javacodereviewprototype.tree;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Small trees shared by the tree matching tests.
+ */
+public class DiffTreeFixtures {
+    private DiffTreeFixtures()
+    {
+    }
+
+    /**
+     * @return A leaf labeled LEAF.
+     */
+    public static DiffTree<String> getLeaf(boolean isOriginal, String value)
+    {
+        return new DiffTree<>("LEAF", value, Collections.emptyList(), isOriginal);
+    }
+
+    /**
+     * Gets a tree with a single block of leaves.
+     * @return A tree that looks like:
+     *    ROOT
+     *     |
+     *   BLOCK
+     *  /  |  \
+     * LEAF ... LEAF, one per value, in order.
+     */
+    public static DiffTree<String> getBlockTree(boolean isOriginal, String... values)
+    {
+        List<DiffTree<String>> leaves = Stream.of(values)
+                .map(value -> getLeaf(isOriginal, value))
+                .collect(Collectors.toList());
+        return new DiffTree<>("ROOT", "", Collections.singletonList(new DiffTree<>("BLOCK", "", leaves, isOriginal)), isOriginal);
+    }
+}
@@ -17,6 +17,8 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
 
+import static org.architectdrone.javacodereviewprototype.tree.DiffTreeFixtures.getBlockTree;
+import static org.architectdrone.javacodereviewprototype.tree.DiffTreeFixtures.getLeaf;
 import static org.junit.jupiter.api.Assertions.*;
 
 public class DiffTreeMatchImplTest {
@@ -198,6 +200,143 @@ public class DiffTreeMatchImplTest {
                 assertTrue(leafC.isMatched());
             }
         }
+
+        @Nested
+        class matchExactLeafTwinsTest {
+            @Test
+            void onlyUniqueTwinsWithTheSameAncestorsAreMatched() {
+                DiffTree<String> uniqueA = getLeaf("LEAF", "unique", true);
+                DiffTree<String> repeatedA = getLeaf("LEAF", "repeated", true);
+                DiffTree<String> otherRepeatedA = getLeaf("LEAF", "repeated", true);
+                DiffTree<String> movedA = getLeaf("LEAF", "moved", true);
+                DiffTree<String> treeA = new DiffTree<>("ROOT", "", Stream.of(
+                        new DiffTree<>("BLOCK", "", Stream.of(uniqueA, repeatedA, otherRepeatedA).collect(Collectors.toList()), true),
+                        new DiffTree<>("BLOCK", "", Collections.singletonList(movedA), true)
+                ).collect(Collectors.toList()), true);
+
+                DiffTree<String> uniqueB = getLeaf("LEAF", "unique", false);
+                DiffTree<String> repeatedB = getLeaf("LEAF", "repeated", false);
+                DiffTree<String> movedB = getLeaf("LEAF", "moved", false);
+                DiffTree<String> treeB = new DiffTree<>("ROOT", "", Stream.of(
+                        new DiffTree<>("BLOCK", "", Stream.of(repeatedB, uniqueB).collect(Collectors.toList()), false),
+                        new DiffTree<>("OTHER BLOCK", "", Collections.singletonList(movedB), false)
+                ).collect(Collectors.toList()), false);
+                treeA.populateAdvancedData();
+                treeB.populateAdvancedData();
+
+                changeDistillationTreeMatchImpl.matchExactLeafTwins(treeA.getLeaves(), treeB.getLeaves());
+
+                assertEquals(uniqueB, uniqueA.getMatch());
+                assertFalse(repeatedA.isMatched());
+                assertFalse(otherRepeatedA.isMatched());
+                assertFalse(repeatedB.isMatched());
+                assertFalse(movedA.isMatched());
+                assertFalse(movedB.isMatched());
+            }
+        }
+
+        @Nested
+        class ancestorLabelPathTest {
+            /**
+             * Builds a random tree with few labels, so that ancestors agree at many different depths.
+             */
+            private DiffTree<String> getRandomTree(Random random, int depth, boolean isOriginal) {
+                String label = "LABEL" + random.nextInt(2);
+                if (depth == 0 || random.nextInt(4) == 0) {
+                    return getLeaf(label, "value" + random.nextInt(3), isOriginal);
+                }
+                List<DiffTree<String>> children = new ArrayList<>();
+                for (int i = random.nextInt(3) + 1; i > 0; i--) {
+                    children.add(getRandomTree(random, depth - 1, isOriginal));
+                }
+                return new DiffTree<>(label, "", children, isOriginal);
+            }
+
+            private void intern(DiffTree<String> tree, SymbolTable<String> symbolTable) {
+                tree.intern(symbolTable);
+                tree.getChildren().forEach(child -> intern(child, symbolTable));
+            }
+
+            @Test
+            void internedTrees_getTheSameScores() {
+                SymbolTable<String> symbolTable = new SymbolTable<>();
+                for (int seed = 0; seed < 20; seed++) {
+                    DiffTree<String> treeA = getRandomTree(new Random(seed), 7, true);
+                    DiffTree<String> treeB = getRandomTree(new Random(seed + 100), 7, false);
+                    DiffTree<String> internedTreeA = getRandomTree(new Random(seed), 7, true);
+                    DiffTree<String> internedTreeB = getRandomTree(new Random(seed + 100), 7, false);
+                    intern(internedTreeA, symbolTable);
+                    intern(internedTreeB, symbolTable);
+                    treeA.populateAdvancedData();
+                    treeB.populateAdvancedData();
+                    internedTreeA.populateAdvancedData();
+                    internedTreeB.populateAdvancedData();
+
+                    val expected = changeDistillationTreeMatchImpl.scorePotentialLeafMatches(treeA.getLeaves(), treeB.getLeaves(), -1, 3);
+                    val actual = changeDistillationTreeMatchImpl.scorePotentialLeafMatches(internedTreeA.getLeaves(), internedTreeB.getLeaves(), -1, 3);
+
+                    assertNotNull(internedTreeA.getLeaves().get(0).getAncestorLabelIds());
+                    assertEquals(expected.stream().map(m -> m.b).collect(Collectors.toList()), actual.stream().map(m -> m.b).collect(Collectors.toList()));
+                }
+            }
+        }
+
+        @Nested
+        class parallelScoringTest {
+            private List<DiffTree<String>> getLeaves(boolean isOriginal) {
+                List<DiffTree<String>> leaves = new ArrayList<>();
+                for (int i = 0; i < 60; i++) {
+                    String value = isOriginal ? "value" + i : "value" + (i * 7 % 60);
+                    leaves.add(getLeaf("LABEL" + (i % 5), value, isOriginal));
+                    leaves.add(getLeaf("LABEL" + (i % 3), "other" + value, isOriginal));
+                }
+                return leaves;
+            }
+
+            @ParameterizedTest
+            @CsvSource({"true", "false"})
+            void scoresAreInTheSameOrderAsSequentialScores(boolean useRealStringSimilarity) {
+                DiffTree<String> treeA = new DiffTree<>("ROOT", "", getLeaves(true), true);
+                DiffTree<String> treeB = new DiffTree<>("ROOT", "", getLeaves(false), false);
+                treeA.populateAdvancedData();
+                treeB.populateAdvancedData();
+                float minimumSimilarity = useRealStringSimilarity ? 1 : -1;
+
+                MatchConfig matchConfig = MatchConfig.builder().leafScoringParallelism(4).build();
+                val sequential = changeDistillationTreeMatchImpl.scorePotentialLeafMatches(treeA.getLeaves(), treeB.getLeaves(), minimumSimilarity, 3);
+                val parallel = new ChangeDistillationTreeMatchImpl(stringSimilarity, commonUtils, matchConfig)
+                        .scorePotentialLeafMatches(treeA.getLeaves(), treeB.getLeaves(), minimumSimilarity, 3);
+
+                assertFalse(sequential.isEmpty());
+                assertEquals(sequential.size(), parallel.size());
+                for (int i = 0; i < sequential.size(); i++) {
+                    assertSame(sequential.get(i).a.a, parallel.get(i).a.a);
+                    assertSame(sequential.get(i).a.b, parallel.get(i).a.b);
+                    assertEquals(sequential.get(i).b, parallel.get(i).b);
+                }
+            }
+
+            @Test
+            void whenCandidatesPerLeafIsSet_onlyTheBestAreKept() {
+                DiffTree<String> treeA = new DiffTree<>("ROOT", "", getLeaves(true), true);
+                DiffTree<String> treeB = new DiffTree<>("ROOT", "", getLeaves(false), false);
+                treeA.populateAdvancedData();
+                treeB.populateAdvancedData();
+
+                MatchConfig matchConfig = MatchConfig.builder().leafCandidatesPerLeaf(2).build();
+                val all = changeDistillationTreeMatchImpl.scorePotentialLeafMatches(treeA.getLeaves(), treeB.getLeaves(), -1, 3);
+                val best = new ChangeDistillationTreeMatchImpl(stringSimilarity, commonUtils, matchConfig)
+                        .scorePotentialLeafMatches(treeA.getLeaves(), treeB.getLeaves(), -1, 3);
+
+                Map<DiffTree<String>, List<Float>> allScores = all.stream().collect(Collectors.groupingBy(m -> m.a.a, IdentityHashMap::new, Collectors.mapping(m -> m.b, Collectors.toList())));
+                Map<DiffTree<String>, List<Float>> bestScores = best.stream().collect(Collectors.groupingBy(m -> m.a.a, IdentityHashMap::new, Collectors.mapping(m -> m.b, Collectors.toList())));
+                assertEquals(allScores.keySet(), bestScores.keySet());
+                for (DiffTree<String> leaf : allScores.keySet()) {
+                    List<Float> expected = allScores.get(leaf).stream().sorted(Comparator.reverseOrder()).limit(2).collect(Collectors.toList());
+                    assertEquals(expected, bestScores.get(leaf).stream().sorted(Comparator.reverseOrder()).collect(Collectors.toList()));
+                }
+            }
+        }
     }
 
     /**
@@ -437,6 +576,43 @@ public class DiffTreeMatchImplTest {
                  */
                 assertEquals(0, score);
             }
+
+            @Test
+            void whenTreesAreNumbered_scoresAreTheSame() {
+                setup122To123Tree();
+                a1.populateAdvancedData();
+                a2.populateAdvancedData();
+
+                /*
+                 * Construct relationships
+                 * D1 => D2
+                 * E1 => C2
+                 */
+                d1.setMatch(d2);
+                e1.setMatch(c2);
+
+                assertEquals((float) 1 / 3, changeDistillationTreeMatchImpl.innerNodeSimilarityScore(b1, b2));
+                assertEquals((float) 2 / 5, changeDistillationTreeMatchImpl.innerNodeSimilarityScore(a1, a2));
+                assertEquals(2, changeDistillationTreeMatchImpl.innerNodeSimilarityScoreAndMinSize(b1, b2).b);
+                assertEquals((float) 1 / 3, changeDistillationTreeMatchImpl.innerNodeSimilarityScore(b2, b1));
+                assertEquals((float) 2 / 5, changeDistillationTreeMatchImpl.innerNodeSimilarityScore(a2, a1));
+            }
+
+            @Test
+            void whenMatchedDescendantsAreTracked_impossibleMatchesAreRejected() {
+                setup122To122Tree();
+                a1.populateAdvancedData();
+                a2.populateAdvancedData();
+                a1.trackMatchedDescendants();
+                a2.trackMatchedDescendants();
+
+                //Labels and values are close enough, but there are no matched descendants to share.
+                assertFalse(changeDistillationTreeMatchImpl.doInnerNodesMatch(b1, b2, -1, 4, 0.4f, 0.6f, 3));
+
+                d1.setMatch(d2);
+                e1.setMatch(e2);
+                assertTrue(changeDistillationTreeMatchImpl.doInnerNodesMatch(b1, b2, -1, 4, 0.4f, 0.6f, 3));
+            }
         }
 
         @Nested
@@ -574,6 +750,58 @@ public class DiffTreeMatchImplTest {
             }
         }
 
+        @Nested
+        class matchIdenticalSubtreesTest {
+            @Test
+            void differentSubtrees_areNotMatched() {
+                set1Small("FOO");
+                set2Large("FOO");
+                a1.populateAdvancedData();
+                a2.populateAdvancedData();
+                a1.setMatch(a2);
+
+                //Every value differs between the trees, so no subtree of A has a twin in B.
+                changeDistillationTreeMatchImpl.matchIdenticalSubtrees(a1, a2);
+                assertFalse(b1.isMatched());
+                assertFalse(d1.isMatched());
+            }
+
+            @Test
+            void identicalSubtrees_areMatchedNodeForNode() {
+                DiffTree<String> x1 = getNode("X", true, Collections.singletonList(getNode("Y", true, Collections.emptyList())));
+                DiffTree<String> x2 = getNode("X", false, Collections.singletonList(getNode("Y", false, Collections.emptyList())));
+                a1 = new DiffTree<String>("FOO", "A1", Stream.of(getNode("Z", true, Collections.emptyList()), x1).collect(Collectors.toList()), true);
+                a2 = new DiffTree<String>("FOO", "A2", Stream.of(x2, getNode("W", false, Collections.emptyList())).collect(Collectors.toList()), false);
+                a1.populateAdvancedData();
+                a2.populateAdvancedData();
+                a1.setMatch(a2);
+
+                changeDistillationTreeMatchImpl.matchIdenticalSubtrees(a1, a2);
+
+                assertEquals(x2, x1.getMatch());
+                assertEquals(x2.getChildren().get(0), x1.getChildren().get(0).getMatch());
+                assertFalse(a1.getChildren().get(0).isMatched());
+            }
+
+            @Test
+            void repeatedSubtrees_areLeftAlone() {
+                DiffTree<String> x1 = getNode("X", true, Collections.singletonList(getNode("Y", true, Collections.emptyList())));
+                DiffTree<String> otherX1 = getNode("X", true, Collections.singletonList(getNode("Y", true, Collections.emptyList())));
+                DiffTree<String> x2 = getNode("X", false, Collections.singletonList(getNode("Y", false, Collections.emptyList())));
+                a1 = new DiffTree<String>("FOO", "A1", Stream.of(x1, otherX1).collect(Collectors.toList()), true);
+                a2 = new DiffTree<String>("FOO", "A2", Collections.singletonList(x2), false);
+                a1.populateAdvancedData();
+                a2.populateAdvancedData();
+                a1.setMatch(a2);
+
+                changeDistillationTreeMatchImpl.matchIdenticalSubtrees(a1, a2);
+
+                assertFalse(x1.isMatched());
+                assertFalse(otherX1.isMatched());
+                assertFalse(x2.isMatched());
+            }
+        }
+
         @Nested
         class matchInnerNodes {
             @Test
@@ -669,6 +897,270 @@ public class DiffTreeMatchImplTest {
                 assertFalse(e2.isMatched());
                 assertFalse(f2.isMatched());
             }
+
+            @Test
+            void whenLabelsDiffer_nodesAreNotConsidered() {
+                //B1 => B2 would be first, but B2 has a different label, so B1 => D2.
+                set1Large("Foo");
+                f2 = getNode("F2", false, Collections.emptyList());
+                e2 = getNode("E2", false, Collections.singletonList(f2));
+                d2 = getNode("D2", false, Collections.singletonList(e2));
+                c2 = getNode("C2", false, Collections.singletonList(d2));
+                b2 = new DiffTree<String>("OTHER", "B2", Collections.singletonList(c2), false);
+                a2 = new DiffTree<String>("Foo", "A2", Collections.singletonList(b2), false);
+
+                StringSimilarity mockStringSimilarity = StringSimilarityMockFactory
+                        .builder()
+                        .aString(b1.getValue())
+                        .bString(b2.getValue())
+                        .result(1.0f)
+                        .aString(b1.getValue())
+                        .bString(d2.getValue())
+                        .result(1.0f)
+                        .build()
+                        .getMockStringSimilarity();
+
+                changeDistillationTreeMatchImpl = new ChangeDistillationTreeMatchImpl(mockStringSimilarity, commonUtils);
+                changeDistillationTreeMatchImpl.matchInnerNodes(
+                        a1,
+                        a2,
+                        0.9f,
+                        4,
+                        -1.0f,
+                        -1.0f,
+                        3
+                );
+
+                assertEquals(d2, b1.getMatch());
+                assertFalse(b2.isMatched());
+            }
+
+            /**
+             * Sets up trees where X2 is first, but Y2 shares more matched leaves with B1:
+             *       [A1]                 [A2]
+             *        |                  /    \
+             *       [B1]            [X2]      [Y2]
+             *     /  |  \         /  |  \   /  |  \
+             *  [D1][E1][F1]    [D2][G2][H2][E2][F2][I2]
+             */
+            void setupBestFirstTrees(ChangeDistillationTreeMatchImpl matcher) {
+                d1 = getNode("D1", true, Collections.emptyList());
+                e1 = getNode("E1", true, Collections.emptyList());
+                f1 = getNode("F1", true, Collections.emptyList());
+                b1 = getNode("B1", true, Stream.of(d1, e1, f1).collect(Collectors.toList()));
+                a1 = new DiffTree<String>("Foo", "A1", Collections.singletonList(b1), true);
+
+                d2 = getNode("D2", false, Collections.emptyList());
+                e2 = getNode("E2", false, Collections.emptyList());
+                f2 = getNode("F2", false, Collections.emptyList());
+                b2 = getNode("X2", false, Stream.of(d2, getNode("G2", false, Collections.emptyList()), getNode("H2", false, Collections.emptyList())).collect(Collectors.toList()));
+                c2 = getNode("Y2", false, Stream.of(e2, f2, getNode("I2", false, Collections.emptyList())).collect(Collectors.toList()));
+                a2 = new DiffTree<String>("Foo", "A2", Stream.of(b2, c2).collect(Collectors.toList()), false);
+
+                a1.populateAdvancedData();
+                a2.populateAdvancedData();
+                d1.setMatch(d2);
+                e1.setMatch(e2);
+                f1.setMatch(f2);
+                matcher.matchInnerNodes(a1, a2, -1.0f, 4, -1.0f, -1.0f, 3);
+            }
+
+            @Test
+            void whenFirstFit_choosesFirst() {
+                setupBestFirstTrees(changeDistillationTreeMatchImpl);
+
+                assertEquals(b2, b1.getMatch());
+            }
+
+            @Test
+            void whenBottomUp_choosesBest() {
+                MatchConfig matchConfig = MatchConfig.builder().innerNodeMatchingMode(InnerNodeMatchingMode.BOTTOM_UP).build();
+                setupBestFirstTrees(new ChangeDistillationTreeMatchImpl(stringSimilarity, commonUtils, matchConfig));
+
+                assertEquals(c2, b1.getMatch());
+                assertFalse(b2.isMatched());
+            }
+        }
+    }
+
+    @Nested
+    class budgetTest {
+        private DiffTree<String> getTree(boolean isOriginal, String... values) {
+            return new DiffTree<>("ROOT", "", Stream.of(
+                    new DiffTree<>("BLOCK", "", Stream.of(getLeaf(isOriginal, values[0]), getLeaf(isOriginal, values[1])).collect(Collectors.toList()), isOriginal),
+                    new DiffTree<>("LOOP", "", Collections.singletonList(getLeaf(isOriginal, values[2])), isOriginal)
+            ).collect(Collectors.toList()), isOriginal);
+        }
+
+        @Test
+        void withinTheBudgets_leavesAreScored() {
+            DiffTree<String> treeA = getTree(true, "getValue", "counter", "index");
+            DiffTree<String> treeB = getTree(false, "getValues", "counter", "other");
+            MatchConfig matchConfig = MatchConfig.builder().maxCandidatePairs(9).maxSimilarityCalls(100).build();
+
+            new ChangeDistillationTreeMatchImpl(stringSimilarity, commonUtils, matchConfig).matchTrees(treeA, treeB);
+
+            assertEquals(treeB.getLeaves().get(0), treeA.getLeaves().get(0).getMatch());
+        }
+
+        @Test
+        void whenThereAreTooManyCandidatePairs_onlyLeavesWithEqualValuesAreMatched() {
+            DiffTree<String> treeA = getTree(true, "getValue", "counter", "index");
+            DiffTree<String> treeB = getTree(false, "getValues", "counter", "other");
+            MatchConfig matchConfig = MatchConfig.builder().maxCandidatePairs(8).build();
+
+            new ChangeDistillationTreeMatchImpl(stringSimilarity, commonUtils, matchConfig).matchTrees(treeA, treeB);
+
+            assertFalse(treeA.getLeaves().get(0).isMatched());
+            assertEquals(treeB.getLeaves().get(1), treeA.getLeaves().get(1).getMatch());
+        }
+
+        @Test
+        void whenSimilarityCallsRunOut_innerNodesAreMatchedByPosition() {
+            DiffTree<String> treeA = getTree(true, "a", "b", "c");
+            DiffTree<String> treeB = getTree(false, "x", "y", "z");
+            MatchConfig matchConfig = MatchConfig.builder().maxSimilarityCalls(1).build();
+
+            new ChangeDistillationTreeMatchImpl(stringSimilarity, commonUtils, matchConfig).matchTrees(treeA, treeB);
+
+            assertEquals(treeB.getChildren().get(0), treeA.getChildren().get(0).getMatch());
+            assertEquals(treeB.getChildren().get(1), treeA.getChildren().get(1).getMatch());
+        }
+
+        @Test
+        void onlyScoredLeafPairs_countAgainstTheBudget() {
+            DiffTree<String> treeA = getTree(true, "getValue", "counter", "index");
+            DiffTree<String> treeB = getTree(false, "getValues", "counter", "other");
+            treeA.populateAdvancedData();
+            treeB.populateAdvancedData();
+
+            long similarityCalls = changeDistillationTreeMatchImpl.matchLeafNodes(treeA, treeB, 1, 3);
+
+            assertTrue(similarityCalls > 0);
+            assertTrue(similarityCalls < 9);
+        }
+
+        @Test
+        void withoutBudgets_innerNodesWithoutMatchedLeavesAreNotMatched() {
+            DiffTree<String> treeA = getTree(true, "a", "b", "c");
+            DiffTree<String> treeB = getTree(false, "x", "y", "z");
+
+            changeDistillationTreeMatchImpl.matchTrees(treeA, treeB);
+
+            assertFalse(treeA.getChildren().get(0).isMatched());
+            assertFalse(treeA.getChildren().get(1).isMatched());
+        }
+    }
+
+    @Nested
+    class cancellationTest {
+        private DiffTree<String> getTree(boolean isOriginal) {
+            return getBlockTree(isOriginal, "counter", "index");
+        }
+
+        @Test
+        void whenNotCancelled_matchesEverything_andSaysSo() {
+            DiffTree<String> treeA = getTree(true);
+            DiffTree<String> treeB = getTree(false);
+
+            assertTrue(changeDistillationTreeMatchImpl.matchTrees(treeA, treeB, new CancellationToken()));
+
+            assertEquals(treeB.getChildren().get(0), treeA.getChildren().get(0).getMatch());
+            assertEquals(treeB.getLeaves().get(1), treeA.getLeaves().get(1).getMatch());
+        }
+
+        @Test
+        void whenCancelled_stopsEarly_andSaysSo() {
+            DiffTree<String> treeA = getTree(true);
+            DiffTree<String> treeB = getTree(false);
+            CancellationToken cancellationToken = new CancellationToken();
+            cancellationToken.cancel();
+
+            assertFalse(changeDistillationTreeMatchImpl.matchTrees(treeA, treeB, cancellationToken));
+
+            assertEquals(treeB, treeA.getMatch());
+            assertFalse(treeA.getChildren().get(0).isMatched());
+            assertFalse(treeA.getLeaves().get(0).isMatched());
+        }
+
+        @Test
+        void whenCancelledOnlyAfterTheLastCheck_saysTheRunIsComplete() {
+            CountingCancellationToken counter = new CountingCancellationToken(Integer.MAX_VALUE);
+            changeDistillationTreeMatchImpl.matchTrees(getTree(true), getTree(false), counter);
+            DiffTree<String> treeA = getTree(true);
+            DiffTree<String> treeB = getTree(false);
+            CountingCancellationToken cancellationToken = new CountingCancellationToken(counter.checks);
+
+            assertTrue(changeDistillationTreeMatchImpl.matchTrees(treeA, treeB, cancellationToken));
+
+            assertTrue(cancellationToken.isCancelled());
+            assertEquals(treeB.getLeaves().get(1), treeA.getLeaves().get(1).getMatch());
+        }
+    }
+
+    /**
+     * A token that is cancelled once it has been checked a given number of times, like a deadline that passes then.
+     */
+    private static class CountingCancellationToken extends CancellationToken {
+        private final int checksBeforeCancelling;
+        private int checks;
+
+        CountingCancellationToken(int checksBeforeCancelling) {
+            this.checksBeforeCancelling = checksBeforeCancelling;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return checks++ >= checksBeforeCancelling;
+        }
+    }
+
+    @Nested
+    class exactSubtreeTest {
+        @Test
+        void withoutExactSubtrees_innerNodesWithoutCommonMatchesAreNotMatched() {
+            DiffTree<String> treeA = getBlockTree(true, "first", "second", "third");
+            DiffTree<String> treeB = getBlockTree(false, "first", "second", "fourth");
+
+            changeDistillationTreeMatchImpl.matchInnerNodes(treeA, treeB, 1, 4, 0.4f, 0.6f, 3);
+
+            assertFalse(treeA.getChildren().get(0).isMatched());
+        }
+
+        @Test
+        void smallSubtrees_areMatchedByTreeEditDistance_withTheirSimilarDescendants() {
+            DiffTree<String> treeA = getBlockTree(true, "first", "second", "third");
+            DiffTree<String> treeB = getBlockTree(false, "first", "second", "fourth");
+            MatchConfig matchConfig = MatchConfig.builder().exactSubtreeMaximumSize(4).build();
+
+            new ChangeDistillationTreeMatchImpl(stringSimilarity, commonUtils, matchConfig).matchInnerNodes(treeA, treeB, 1, 4, 0.4f, 0.6f, 3);
+
+            assertEquals(treeB.getChildren().get(0), treeA.getChildren().get(0).getMatch());
+            assertEquals(treeB.getLeaves().get(0), treeA.getLeaves().get(0).getMatch());
+            assertEquals(treeB.getLeaves().get(1), treeA.getLeaves().get(1).getMatch());
+            assertFalse(treeA.getLeaves().get(2).isMatched());
+        }
+
+        @Test
+        void largerSubtrees_areHeldToTheLargeSubtreeThreshold() {
+            DiffTree<String> treeA = getBlockTree(true, "first", "second", "third");
+            DiffTree<String> treeB = getBlockTree(false, "first", "second", "fourth");
+            MatchConfig matchConfig = MatchConfig.builder().exactSubtreeMaximumSize(4).build();
+
+            new ChangeDistillationTreeMatchImpl(stringSimilarity, commonUtils, matchConfig).matchInnerNodes(treeA, treeB, 1, 2, 0.4f, 0.8f, 3);
+
+            assertFalse(treeA.getChildren().get(0).isMatched());
+        }
+
+        @Test
+        void subtreesAboveTheMaximumSize_areScoredAsBefore() {
+            DiffTree<String> treeA = getBlockTree(true, "first", "second", "third");
+            DiffTree<String> treeB = getBlockTree(false, "first", "second", "fourth");
+            MatchConfig matchConfig = MatchConfig.builder().exactSubtreeMaximumSize(3).build();
+
+            new ChangeDistillationTreeMatchImpl(stringSimilarity, commonUtils, matchConfig).matchInnerNodes(treeA, treeB, 1, 4, 0.4f, 0.6f, 3);
+
+            assertFalse(treeA.getChildren().get(0).isMatched());
         }
     }
 }
\ No newline at end of file
@@ -6,6 +6,10 @@ import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
+import org.architectdrone.javacodereviewprototype.utils.common.CommonUtilsImpl;
+import org.architectdrone.javacodereviewprototype.utils.strings.NGramProfile;
+import org.architectdrone.javacodereviewprototype.utils.strings.StringSimilarity;
+import org.architectdrone.javacodereviewprototype.utils.strings.StringSimilarityImpl;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 
@@ -139,6 +143,114 @@ class DiffTreeTest {
             assertEquals(b.getParent(), c);
             assertEquals(a.getParent(), c);
         }
+
+        @Test
+        void numbering_works()
+        {
+            d.populateAdvancedData();
+            assertEquals(0, d.getPreorderNumber());
+            assertEquals(1, c.getPreorderNumber());
+            assertEquals(2, a.getPreorderNumber());
+            assertEquals(3, b.getPreorderNumber());
+            assertEquals(0, a.getPostorderNumber());
+            assertEquals(3, d.getPostorderNumber());
+            assertEquals(4, d.getSubtreeSize());
+            assertEquals(3, c.getSubtreeSize());
+            assertEquals(1, a.getSubtreeSize());
+            assertSame(b, a.getNodeByPreorderNumber(3));
+        }
+
+        @Test
+        void matchedDescendantCounts_followMatches()
+        {
+            DiffTree<String> other = new DiffTree<String>("a_value", "a_label", Collections.emptyList(), false);
+            DiffTree<String> otherB = new DiffTree<String>("b_value", "b_label", Collections.emptyList(), false);
+            a.setMatch(other);
+            d.populateAdvancedData();
+            d.trackMatchedDescendants();
+            assertEquals(1, d.getMatchedDescendantCount());
+            assertEquals(1, c.getMatchedDescendantCount());
+
+            b.setMatch(otherB);
+            assertEquals(2, d.getMatchedDescendantCount());
+            assertEquals(2, c.getMatchedDescendantCount());
+            assertEquals(0, b.getMatchedDescendantCount());
+
+            a.unmatch();
+            a.unmatch();
+            assertEquals(1, d.getMatchedDescendantCount());
+            assertEquals(1, c.getMatchedDescendantCount());
+        }
+
+        @Test
+        void subtreeHashes_dependOnLabelsValuesAndShape()
+        {
+            DiffTree<String> otherA = new DiffTree<String>("a_value", "a_label", Collections.emptyList(), false);
+            DiffTree<String> otherB = new DiffTree<String>("b_value", "b_label", Collections.emptyList(), false);
+            DiffTree<String> otherC = new DiffTree<String>("c_value", "c_label", Stream.of(otherA, otherB).collect(Collectors.toList()), false);
+            DiffTree<String> swappedC = new DiffTree<String>("c_value", "c_label", Stream.of(
+                    new DiffTree<String>("b_value", "b_label", Collections.emptyList(), false),
+                    new DiffTree<String>("a_value", "a_label", Collections.emptyList(), false)
+            ).collect(Collectors.toList()), false);
+            DiffTree<String> otherRoot = new DiffTree<String>("d_value", "d_label", Stream.of(otherC, swappedC).collect(Collectors.toList()), false);
+            d.populateAdvancedData();
+            otherRoot.populateAdvancedData();
+
+            assertEquals(c.getSubtreeHash(), otherC.getSubtreeHash());
+            assertEquals(a.getSubtreeHash(), otherA.getSubtreeHash());
+            assertNotEquals(c.getSubtreeHash(), swappedC.getSubtreeHash());
+            assertNotEquals(a.getSubtreeHash(), b.getSubtreeHash());
+            assertNotEquals(d.getSubtreeHash(), otherRoot.getSubtreeHash());
+        }
+
+        @Test
+        void isDescendantOf_works()
+        {
+            d.populateAdvancedData();
+            assertTrue(a.isDescendantOf(c));
+            assertTrue(a.isDescendantOf(d));
+            assertFalse(c.isDescendantOf(c));
+            assertFalse(c.isDescendantOf(a));
+            assertFalse(b.isDescendantOf(a));
+        }
+
+        @Test
+        void populatingTwice_throws_andKeepsTheNumbering()
+        {
+            d.populateAdvancedData();
+            assertThrows(RuntimeException.class, () -> d.populateAdvancedData());
+            assertSame(b, d.getNodeByPreorderNumber(3));
+            d.trackMatchedDescendants();
+        }
+    }
+
+    @Nested
+    class getValueProfileTests
+    {
+        StringSimilarity stringSimilarity = new StringSimilarityImpl(new CommonUtilsImpl());
+
+        @Test
+        void whenCalledTwice_profileIsReused()
+        {
+            assertSame(a.getValueProfile(stringSimilarity, 3), a.getValueProfile(stringSimilarity, 3));
+        }
+
+        @Test
+        void whenValueChanges_profileIsRebuilt()
+        {
+            NGramProfile before = a.getValueProfile(stringSimilarity, 3);
+            a.setValue("other_value");
+            NGramProfile after = a.getValueProfile(stringSimilarity, 3);
+            assertNotSame(before, after);
+            assertEquals("other_value", after.getValue());
+        }
+
+        @Test
+        void whenNChanges_profileIsRebuilt()
+        {
+            assertEquals(2, a.getValueProfile(stringSimilarity, 2).getN());
+            assertEquals(3, a.getValueProfile(stringSimilarity, 3).getN());
+        }
     }
 
     @Nested
@@ -0,0 +1,93 @@
+package org.architectdrone.javacodereviewprototype.tree;
+
+import com.google.inject.Guice;
+import java.util.Arrays;
+import java.util.Collections;
+import org.architectdrone.javacodereviewprototype.dependencyinjection.DefaultModule;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GumTreeTreeMatchImplTest {
+    GumTreeTreeMatchImpl gumTreeTreeMatchImpl = new GumTreeTreeMatchImpl();
+
+    @SafeVarargs
+    private static DiffTree<String> node(boolean isOriginal, String label, String value, DiffTree<String>... children) {
+        return new DiffTree<>(label, value, Arrays.asList(children), isOriginal);
+    }
+
+    private static DiffTree<String> leaf(boolean isOriginal, String label, String value) {
+        return new DiffTree<>(label, value, Collections.emptyList(), isOriginal);
+    }
+
+    private static DiffTree<String> call(boolean isOriginal, String method, String argument) {
+        return node(isOriginal, "CALL", method, leaf(isOriginal, "NAME", method), leaf(isOriginal, "ARGUMENT", argument));
+    }
+
+    @Test
+    void identicalTrees_areMatchedNodeForNode() {
+        DiffTree<String> treeA = node(true, "METHOD", "run", call(true, "print", "a"), call(true, "log", "b"));
+        DiffTree<String> treeB = node(false, "METHOD", "run", call(false, "print", "a"), call(false, "log", "b"));
+
+        gumTreeTreeMatchImpl.matchTrees(treeA, treeB);
+
+        for (int i = 0; i < treeA.getSubtreeSize(); i++) {
+            assertSame(treeB.getNodeByPreorderNumber(i), treeA.getNodeByPreorderNumber(i).getMatch());
+        }
+    }
+
+    @Test
+    void movedSubtrees_areMatchedWhereTheyMoved() {
+        DiffTree<String> movedA = call(true, "print", "a");
+        DiffTree<String> movedB = call(false, "print", "a");
+        DiffTree<String> treeA = node(true, "CLASS", "C",
+                node(true, "METHOD", "first", movedA, call(true, "log", "b")),
+                node(true, "METHOD", "second", call(true, "save", "c")));
+        DiffTree<String> treeB = node(false, "CLASS", "C",
+                node(false, "METHOD", "first", call(false, "log", "b")),
+                node(false, "METHOD", "second", call(false, "save", "c"), movedB));
+
+        gumTreeTreeMatchImpl.matchTrees(treeA, treeB);
+
+        assertSame(movedB, movedA.getMatch());
+        assertSame(treeB.getChildren().get(0), treeA.getChildren().get(0).getMatch());
+        assertSame(treeB.getChildren().get(1), treeA.getChildren().get(1).getMatch());
+    }
+
+    @Test
+    void changedLeaves_areRecoveredUnderMatchedParents() {
+        DiffTree<String> treeA = node(true, "METHOD", "run", call(true, "print", "a"), call(true, "log", "b"), call(true, "save", "c"));
+        DiffTree<String> treeB = node(false, "METHOD", "run", call(false, "print", "a"), call(false, "log", "b"), call(false, "save", "changed"));
+
+        gumTreeTreeMatchImpl.matchTrees(treeA, treeB);
+
+        DiffTree<String> changedCallA = treeA.getChildren().get(2);
+        DiffTree<String> changedCallB = treeB.getChildren().get(2);
+        assertSame(changedCallB, changedCallA.getMatch());
+        assertSame(changedCallB.getChildren().get(1), changedCallA.getChildren().get(1).getMatch());
+    }
+
+    @Test
+    void identicalTwins_areMatchedByTheirParents() {
+        DiffTree<String> twinA = call(true, "print", "a");
+        DiffTree<String> treeA = node(true, "CLASS", "C",
+                node(true, "METHOD", "first", call(true, "log", "b"), twinA, call(true, "save", "c")),
+                node(true, "METHOD", "second", call(true, "load", "d"), call(true, "print", "a"), call(true, "close", "e")));
+        DiffTree<String> treeB = node(false, "CLASS", "C",
+                node(false, "METHOD", "second", call(false, "load", "d"), call(false, "print", "a"), call(false, "close", "changed")),
+                node(false, "METHOD", "first", call(false, "log", "b"), call(false, "print", "a"), call(false, "save", "changed")));
+
+        gumTreeTreeMatchImpl.matchTrees(treeA, treeB);
+
+        assertSame(treeB.getChildren().get(1).getChildren().get(1), twinA.getMatch());
+        assertSame(treeB.getChildren().get(0).getChildren().get(1), treeA.getChildren().get(1).getChildren().get(1).getMatch());
+    }
+
+    @Test
+    void defaultModule_bindsTheConfiguredAlgorithm() {
+        MatchConfig gumTreeConfig = MatchConfig.builder().treeMatchAlgorithm(TreeMatchAlgorithm.GUMTREE).build();
+
+        assertTrue(Guice.createInjector(new DefaultModule(gumTreeConfig)).getInstance(TreeMatch.class) instanceof GumTreeTreeMatchImpl);
+        assertTrue(Guice.createInjector(new DefaultModule()).getInstance(TreeMatch.class) instanceof ChangeDistillationTreeMatchImpl);
+    }
+}
@@ -0,0 +1,69 @@
+package org.architectdrone.javacodereviewprototype.tree;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.architectdrone.javacodereviewprototype.utils.common.CommonUtilsImpl;
+import org.architectdrone.javacodereviewprototype.utils.strings.NGramProfile;
+import org.architectdrone.javacodereviewprototype.utils.strings.StringSimilarity;
+import org.architectdrone.javacodereviewprototype.utils.strings.StringSimilarityImpl;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LeafCandidateIndexTest {
+    StringSimilarity stringSimilarity = new StringSimilarityImpl(new CommonUtilsImpl());
+
+    private DiffTree<String> getLeaf(String label, String value, boolean isOriginal) {
+        return new DiffTree<String>(label, value, Collections.emptyList(), isOriginal);
+    }
+
+    private LeafCandidateIndex<String> getIndex(List<DiffTree<String>> leaves) {
+        List<NGramProfile> profiles = leaves.stream().map(l -> l.getValueProfile(stringSimilarity, 3)).collect(Collectors.toList());
+        return new LeafCandidateIndex<>(leaves, profiles);
+    }
+
+    private List<Integer> getCandidates(LeafCandidateIndex<String> index, DiffTree<String> leaf, float minimumSimilarity) {
+        List<Integer> candidates = new ArrayList<>();
+        index.forEachCandidate(leaf.getLabel(), leaf.getValueProfile(stringSimilarity, 3), minimumSimilarity, candidates::add);
+        return candidates;
+    }
+
+    @Test
+    void whenNoNGramIsShared_leafIsNotACandidate() {
+        LeafCandidateIndex<String> index = getIndex(Stream.of(getLeaf("LABEL", "whats", false)).collect(Collectors.toList()));
+
+        assertTrue(getCandidates(index, getLeaf("LABEL", "hello", true), 0).isEmpty());
+    }
+
+    @Test
+    void whenLabelsDiffer_leafIsNotACandidate() {
+        LeafCandidateIndex<String> index = getIndex(Stream.of(getLeaf("OTHER LABEL", "hello", false)).collect(Collectors.toList()));
+
+        assertTrue(getCandidates(index, getLeaf("LABEL", "hello", true), 0).isEmpty());
+    }
+
+    @Test
+    void candidatesAreExactlyThoseAboveTheMinimum_inOrder() {
+        List<String> values = Stream.of("helloa", "hellob", "abcdef", "defabc", "hello", "", "zzzzza", "yyyyya", "getValue", "setValue", "value")
+                .collect(Collectors.toList());
+        List<DiffTree<String>> leaves = values.stream().map(v -> getLeaf("LABEL", v, false)).collect(Collectors.toList());
+        LeafCandidateIndex<String> index = getIndex(leaves);
+
+        for (float minimumSimilarity : new float[]{0f, 0.5f, 1f, 1.5f}) {
+            for (String value : values) {
+                DiffTree<String> leaf = getLeaf("LABEL", value, true);
+                List<Integer> expected = new ArrayList<>();
+                for (int i = 0; i < leaves.size(); i++) {
+                    if (stringSimilarity.getStringSimilarity(value, values.get(i), 3) > minimumSimilarity) {
+                        expected.add(i);
+                    }
+                }
+                assertEquals(expected, getCandidates(index, leaf, minimumSimilarity));
+            }
+        }
+    }
+}
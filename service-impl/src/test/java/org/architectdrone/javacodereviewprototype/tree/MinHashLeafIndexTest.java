@@ -0,0 +1,86 @@
+package org.architectdrone.javacodereviewprototype.tree;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.architectdrone.javacodereviewprototype.utils.common.CommonUtilsImpl;
+import org.architectdrone.javacodereviewprototype.utils.strings.NGramProfile;
+import org.architectdrone.javacodereviewprototype.utils.strings.StringSimilarity;
+import org.architectdrone.javacodereviewprototype.utils.strings.StringSimilarityImpl;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MinHashLeafIndexTest {
+    StringSimilarity stringSimilarity = new StringSimilarityImpl(new CommonUtilsImpl());
+
+    private DiffTree<String> getLeaf(String label, String value, boolean isOriginal) {
+        return new DiffTree<String>(label, value, Collections.emptyList(), isOriginal);
+    }
+
+    private List<Integer> getCandidates(List<DiffTree<String>> leaves, DiffTree<String> leaf) {
+        List<NGramProfile> profiles = leaves.stream().map(l -> l.getValueProfile(stringSimilarity, 3)).collect(Collectors.toList());
+        MinHashLeafIndex<String> index = new MinHashLeafIndex<>(leaves, profiles, MatchConfig.DEFAULT);
+        List<Integer> candidates = new ArrayList<>();
+        index.forEachCandidate(leaf.getLabel(), leaf.getValueProfile(stringSimilarity, 3), 1, candidates::add);
+        return candidates;
+    }
+
+    @Nested
+    class forEachCandidateTests
+    {
+        @Test
+        void identicalValues_areCandidates() {
+            List<DiffTree<String>> leaves = Stream.of(
+                    getLeaf("LABEL", "whats", false),
+                    getLeaf("LABEL", "somethingRatherLong", false),
+                    getLeaf("LABEL", "i", false)
+            ).collect(Collectors.toList());
+
+            assertEquals(Collections.singletonList(1), getCandidates(leaves, getLeaf("LABEL", "somethingRatherLong", true)));
+            assertEquals(Collections.singletonList(2), getCandidates(leaves, getLeaf("LABEL", "i", true)));
+        }
+
+        @Test
+        void disjointValues_areNotCandidates() {
+            List<DiffTree<String>> leaves = Stream.of(getLeaf("LABEL", "whats", false)).collect(Collectors.toList());
+
+            assertTrue(getCandidates(leaves, getLeaf("LABEL", "hello", true)).isEmpty());
+        }
+
+        @Test
+        void differentLabels_areNotCandidates() {
+            List<DiffTree<String>> leaves = Stream.of(getLeaf("OTHER LABEL", "hello", false)).collect(Collectors.toList());
+
+            assertTrue(getCandidates(leaves, getLeaf("LABEL", "hello", true)).isEmpty());
+        }
+    }
+
+    @Nested
+    class matchTreesTests
+    {
+        @Test
+        void whenValuesAreIdentical_matchesLikeExactMode() {
+            List<DiffTree<String>> leavesA = Stream.of("alpha", "beta", "gamma", "delta")
+                    .map(v -> getLeaf("LEAF", v, true))
+                    .collect(Collectors.toList());
+            List<DiffTree<String>> leavesB = Stream.of("delta", "gamma", "beta", "alpha")
+                    .map(v -> getLeaf("LEAF", v, false))
+                    .collect(Collectors.toList());
+            DiffTree<String> treeA = new DiffTree<>("ROOT", "", leavesA, true);
+            DiffTree<String> treeB = new DiffTree<>("ROOT", "", leavesB, false);
+
+            MatchConfig matchConfig = MatchConfig.builder().leafMatchingMode(LeafMatchingMode.MIN_HASH).build();
+            new ChangeDistillationTreeMatchImpl(stringSimilarity, new CommonUtilsImpl(), matchConfig).matchTrees(treeA, treeB);
+
+            for (DiffTree<String> leaf : treeA.getChildren()) {
+                assertTrue(leaf.isMatched());
+                assertEquals(leaf.getValue(), leaf.getMatch().getValue());
+            }
+        }
+    }
+}
@@ -2691,4 +2691,34 @@ class PopulateDiffTreeImplTest {
             assertEquals("Test", c1.value);
         }
     }
+
+    @Nested
+    class CancellationTests
+    {
+        @Test
+        void whenNotCancelled_populatesEveryLevel()
+        {
+            DiffTree<String> a1 = createANode(true);
+            DiffTree<String> b2 = createBNode(false);
+            DiffTree<String> a2 = createANode(false, b2);
+            a1.setMatch(a2);
+
+            assertTrue(populateDiffTree.populateDiffTree(a1, a2, new CancellationToken()));
+            assertNumberOfChildren(a1, 1);
+        }
+
+        @Test
+        void whenCancelled_stopsBeforeTheNextLevel_andSaysSo()
+        {
+            DiffTree<String> a1 = createANode(true);
+            DiffTree<String> b2 = createBNode(false);
+            DiffTree<String> a2 = createANode(false, b2);
+            a1.setMatch(a2);
+            CancellationToken cancellationToken = new CancellationToken();
+            cancellationToken.cancel();
+
+            assertFalse(populateDiffTree.populateDiffTree(a1, a2, cancellationToken));
+            assertNumberOfChildren(a1, 0);
+        }
+    }
 }
\ No newline at end of file
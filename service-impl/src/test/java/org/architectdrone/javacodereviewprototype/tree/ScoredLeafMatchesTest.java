@@ -0,0 +1,81 @@
+package org.architectdrone.javacodereviewprototype.tree;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScoredLeafMatchesTest {
+    private int[] getScoresInOrder(ScoredLeafMatches scoredLeafMatches) {
+        return IntStream.of(scoredLeafMatches.getOrderByScore()).map(scoredLeafMatches::getLeafB).toArray();
+    }
+
+    @Nested
+    class getOrderByScoreTests
+    {
+        @Test
+        void sortsLikeAStableSortOnFloatCompare() {
+            Random random = new Random(3);
+            float[] choices = {0f, -0f, 1f, 1.5f, -1f, 2f, 0.25f, Float.NaN, Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY};
+            ScoredLeafMatches scoredLeafMatches = new ScoredLeafMatches(1);
+            List<Float> scores = new ArrayList<>();
+            for (int i = 0; i < 5000; i++) {
+                float score = random.nextBoolean() ? choices[random.nextInt(choices.length)] : random.nextFloat() * 10 - 5;
+                scoredLeafMatches.add(0, i, score);
+                scores.add(score);
+            }
+
+            List<Integer> expected = IntStream.range(0, scores.size())
+                    .boxed()
+                    .sorted(Comparator.comparing(scores::get, (s1, s2) -> Float.compare(s2, s1)))
+                    .collect(Collectors.toList());
+            assertArrayEquals(expected.stream().mapToInt(Integer::intValue).toArray(), getScoresInOrder(scoredLeafMatches));
+        }
+    }
+
+    @Nested
+    class keepBestTests
+    {
+        @Test
+        void keepsTheBestEntries_inTheOrderTheyWereAdded() {
+            ScoredLeafMatches scoredLeafMatches = new ScoredLeafMatches();
+            scoredLeafMatches.add(0, 0, 5);
+            scoredLeafMatches.add(1, 1, 1);
+            scoredLeafMatches.add(1, 2, 3);
+            scoredLeafMatches.add(1, 3, 2);
+            scoredLeafMatches.add(1, 4, 3);
+
+            scoredLeafMatches.keepBest(1, 2);
+
+            assertEquals(3, scoredLeafMatches.size());
+            assertEquals(0, scoredLeafMatches.getLeafB(0));
+            assertEquals(2, scoredLeafMatches.getLeafB(1));
+            assertEquals(4, scoredLeafMatches.getLeafB(2));
+        }
+    }
+
+    @Nested
+    class sortByLeafATests
+    {
+        @Test
+        void keepsTheOrderWithinALeaf() {
+            ScoredLeafMatches scoredLeafMatches = new ScoredLeafMatches();
+            scoredLeafMatches.add(2, 0, 1);
+            scoredLeafMatches.add(0, 1, 1);
+            scoredLeafMatches.add(2, 2, 1);
+            scoredLeafMatches.add(0, 3, 1);
+
+            scoredLeafMatches.sortByLeafA(3);
+
+            assertArrayEquals(new int[]{1, 3, 0, 2}, IntStream.range(0, 4).map(scoredLeafMatches::getLeafB).toArray());
+            assertArrayEquals(new int[]{0, 0, 2, 2}, IntStream.range(0, 4).map(scoredLeafMatches::getLeafA).toArray());
+        }
+    }
+}
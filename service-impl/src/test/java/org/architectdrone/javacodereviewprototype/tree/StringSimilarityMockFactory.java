@@ -8,9 +8,13 @@ package org.architectdrone.javacodereviewprototype.tree;/*
 import java.util.List;
 import lombok.Builder;
 import lombok.Singular;
+import org.architectdrone.javacodereviewprototype.utils.strings.NGramProfile;
 import org.architectdrone.javacodereviewprototype.utils.strings.StringSimilarity;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyFloat;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -24,6 +28,18 @@ public class StringSimilarityMockFactory {
     public StringSimilarity getMockStringSimilarity()
     {
         StringSimilarity mockStringSimilarity = mock(StringSimilarity.class);
+        //Profiles just carry the string along, so that comparing them falls through to the stubbed string similarity.
+        when(mockStringSimilarity.getProfile(anyString(), anyInt())).thenAnswer(invocation -> new NGramProfile(invocation.getArgument(0), invocation.getArgument(1)));
+        when(mockStringSimilarity.getStringSimilarity(any(NGramProfile.class), any(NGramProfile.class))).thenAnswer(invocation -> {
+            NGramProfile a = invocation.getArgument(0);
+            NGramProfile b = invocation.getArgument(1);
+            return mockStringSimilarity.getStringSimilarity(a.getValue(), b.getValue(), a.getN());
+        });
+        when(mockStringSimilarity.getStringSimilarity(any(NGramProfile.class), any(NGramProfile.class), anyFloat())).thenAnswer(invocation -> {
+            NGramProfile a = invocation.getArgument(0);
+            NGramProfile b = invocation.getArgument(1);
+            return mockStringSimilarity.getStringSimilarity(a.getValue(), b.getValue(), a.getN());
+        });
         for (int i = 0; i < aStrings.size(); i++) {
             when(mockStringSimilarity.getStringSimilarity(eq(aStrings.get(i)), eq(bStrings.get(i)), anyInt())).thenReturn(results.get(i));
         }
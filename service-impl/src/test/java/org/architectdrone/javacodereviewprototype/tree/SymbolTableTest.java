@@ -0,0 +1,75 @@
+package org.architectdrone.javacodereviewprototype.tree;
+
+import java.util.Collections;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SymbolTableTest {
+    SymbolTable<String> symbolTable = new SymbolTable<>();
+
+    @Nested
+    class idTests
+    {
+        @Test
+        void equalValues_getEqualIds() {
+            assertEquals(symbolTable.getValueId("value"), symbolTable.getValueId(new String("value")));
+            assertNotEquals(symbolTable.getValueId("value"), symbolTable.getValueId("other value"));
+            assertEquals(2, symbolTable.getValueCount());
+        }
+
+        @Test
+        void equalLabels_getEqualIds() {
+            assertEquals(symbolTable.getLabelId("LABEL"), symbolTable.getLabelId(new String("LABEL")));
+            assertNotEquals(symbolTable.getLabelId("LABEL"), symbolTable.getLabelId("OTHER LABEL"));
+        }
+
+        @Test
+        void equalValues_shareOneInstance() {
+            String value = symbolTable.intern("value");
+            assertSame(value, symbolTable.intern(new String("value")));
+        }
+    }
+
+    @Nested
+    class diffTreeTests
+    {
+        @Test
+        void internedNodes_compareByIds() {
+            DiffTree<String> a = new DiffTree<>("LABEL", "value", Collections.emptyList(), true);
+            DiffTree<String> b = new DiffTree<>("LABEL", new String("value"), Collections.emptyList(), false);
+            a.intern(symbolTable);
+            b.intern(symbolTable);
+
+            assertSame(a.getValue(), b.getValue());
+            assertEquals(a.getValueId(), b.getValueId());
+            assertTrue(a.hasSameLabel(b));
+            assertTrue(a.hasSameValue(b));
+        }
+
+        @Test
+        void whenValueIsSet_itIsInterned() {
+            DiffTree<String> a = new DiffTree<>("LABEL", "value", Collections.emptyList(), true);
+            DiffTree<String> b = new DiffTree<>("LABEL", "other value", Collections.emptyList(), false);
+            a.intern(symbolTable);
+            b.intern(symbolTable);
+            assertFalse(a.hasSameValue(b));
+
+            a.setValue(new String("other value"));
+            assertTrue(a.hasSameValue(b));
+            assertSame(a.getValue(), b.getValue());
+        }
+
+        @Test
+        void whenOnlyOneNodeIsInterned_comparesByEquals() {
+            DiffTree<String> a = new DiffTree<>("LABEL", "value", Collections.emptyList(), true);
+            DiffTree<String> b = new DiffTree<>("LABEL", "value", Collections.emptyList(), false);
+            a.intern(symbolTable);
+
+            assertTrue(a.hasSameLabel(b));
+            assertTrue(a.hasSameValue(b));
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package org.architectdrone.javacodereviewprototype.tree;
+
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TreeEditDistanceTest {
+    @SafeVarargs
+    private static DiffTree<String> node(boolean isOriginal, String label, DiffTree<String>... children) {
+        return new DiffTree<>(label, "", Arrays.asList(children), isOriginal);
+    }
+
+    private static DiffTree<String> leaf(boolean isOriginal, String label, String value) {
+        return new DiffTree<>(label, value, Collections.emptyList(), isOriginal);
+    }
+
+    @Test
+    void identicalSubtrees_haveNoDistance() {
+        DiffTree<String> treeA = node(true, "F", node(true, "C", leaf(true, "A", "x")), leaf(true, "E", "y"));
+        DiffTree<String> treeB = node(false, "F", node(false, "C", leaf(false, "A", "x")), leaf(false, "E", "y"));
+
+        assertEquals(0, new TreeEditDistance<String>(10).getDistance(treeA, treeB));
+        assertEquals(1, new TreeEditDistance<String>(10).getSimilarity(treeA, treeB));
+    }
+
+    @Test
+    void changedValuesInsertionsAndDeletions_costOneEach() {
+        DiffTree<String> treeA = node(true, "F", leaf(true, "A", "x"), leaf(true, "B", "y"), leaf(true, "D", "w"));
+        DiffTree<String> treeB = node(false, "F", leaf(false, "A", "changed"), leaf(false, "C", "z"), leaf(false, "D", "w"));
+
+        //x is changed, B is deleted and C is inserted.
+        assertEquals(3, new TreeEditDistance<String>(10).getDistance(treeA, treeB));
+    }
+
+    @Test
+    void nodesCanBeRemovedFromBetweenAParentAndItsChildren() {
+        //The example of Zhang and Shasha: f(d(a c(b)) e) into f(c(d(a b)) e).
+        DiffTree<String> treeA = node(true, "f", node(true, "d", leaf(true, "a", ""), node(true, "c", leaf(true, "b", ""))), leaf(true, "e", ""));
+        DiffTree<String> treeB = node(false, "f", node(false, "c", node(false, "d", leaf(false, "a", ""), leaf(false, "b", ""))), leaf(false, "e", ""));
+
+        assertEquals(2, new TreeEditDistance<String>(10).getDistance(treeA, treeB));
+    }
+
+    @Test
+    void similarityUpperBound_isNeverBelowTheSimilarity() {
+        DiffTree<String> treeA = node(true, "F", leaf(true, "A", "x"), leaf(true, "B", "y"), leaf(true, "D", "w"));
+        DiffTree<String> treeB = node(false, "F", leaf(false, "A", "changed"));
+        TreeEditDistance<String> treeEditDistance = new TreeEditDistance<>(10);
+
+        assertEquals(0.5f, treeEditDistance.getSimilarityUpperBound(treeA, treeB));
+        assertTrue(treeEditDistance.getSimilarity(treeA, treeB) <= treeEditDistance.getSimilarityUpperBound(treeA, treeB));
+    }
+
+    @Test
+    void matchDescendants_followsAnOptimalMapping() {
+        DiffTree<String> keptA = leaf(true, "A", "x");
+        DiffTree<String> changedA = leaf(true, "A", "y");
+        DiffTree<String> deletedA = leaf(true, "B", "z");
+        DiffTree<String> treeA = node(true, "F", keptA, deletedA, changedA);
+        DiffTree<String> keptB = leaf(false, "A", "x");
+        DiffTree<String> changedB = leaf(false, "A", "changed");
+        DiffTree<String> treeB = node(false, "F", keptB, changedB);
+
+        new TreeEditDistance<String>(10).matchDescendants(treeA, treeB, (nodeA, nodeB) -> true);
+
+        assertEquals(keptB, keptA.getMatch());
+        assertEquals(changedB, changedA.getMatch());
+        assertFalse(deletedA.isMatched());
+        assertFalse(treeA.isMatched());
+    }
+
+    @Test
+    void matchDescendants_leavesRejectedPairsUnmatched() {
+        DiffTree<String> keptA = leaf(true, "A", "x");
+        DiffTree<String> changedA = leaf(true, "A", "y");
+        DiffTree<String> treeA = node(true, "F", keptA, changedA);
+        DiffTree<String> keptB = leaf(false, "A", "x");
+        DiffTree<String> changedB = leaf(false, "A", "changed");
+        DiffTree<String> treeB = node(false, "F", keptB, changedB);
+
+        new TreeEditDistance<String>(10).matchDescendants(treeA, treeB, DiffTree::hasSameValue);
+
+        assertEquals(keptB, keptA.getMatch());
+        assertFalse(changedA.isMatched());
+        assertFalse(changedB.isMatched());
+    }
+
+    @Test
+    void canCompare_onlySubtreesUpToTheMaximumSize() {
+        DiffTree<String> small = node(true, "F", leaf(true, "A", "x"));
+        DiffTree<String> large = node(false, "F", leaf(false, "A", "x"), leaf(false, "A", "y"));
+
+        assertTrue(new TreeEditDistance<String>(2).canCompare(small, node(false, "F", leaf(false, "A", "x"))));
+        assertFalse(new TreeEditDistance<String>(2).canCompare(small, large));
+    }
+}
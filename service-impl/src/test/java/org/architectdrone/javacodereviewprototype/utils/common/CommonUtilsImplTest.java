@@ -65,4 +65,53 @@ class CommonUtilsImplTest {
             assertEquals(1, Collections.frequency(intersection, "b"));
         }
     }
-}
\ No newline at end of file
+
+    @Nested
+    class getIdentityIntersectionSizeTests
+    {
+        @Test
+        void whenListsDoIntersect_sizeIsCorrect() {
+            String b = "b";
+            List<String> listA = Stream.of("a", b).collect(Collectors.toList());
+            List<String> listB = Stream.of(b, "d").collect(Collectors.toList());
+
+            assertEquals(1, commonUtils.getIdentityIntersectionSize(listA, listB));
+        }
+
+        @Test
+        void equalButDistinctElements_areNotCounted() {
+            List<String> a = Stream.of(new String("a")).collect(Collectors.toList());
+            List<String> b = Stream.of(new String("a")).collect(Collectors.toList());
+
+            assertEquals(0, commonUtils.getIdentityIntersectionSize(a, b));
+        }
+
+        @Test
+        void repeatedElements_areCountedOnce() {
+            String a = "a";
+            List<String> listA = Stream.of(a, a).collect(Collectors.toList());
+            List<String> listB = Stream.of(a, a, a).collect(Collectors.toList());
+
+            assertEquals(1, commonUtils.getIdentityIntersectionSize(listA, listB));
+        }
+
+        @Test
+        void elementsOfEarlierCalls_areNotCounted() {
+            String a = "a";
+            String b = "b";
+            List<String> listA = Stream.of(a, b).collect(Collectors.toList());
+            List<String> listB = Stream.of(a).collect(Collectors.toList());
+
+            assertEquals(1, commonUtils.getIdentityIntersectionSize(listA, listB));
+            assertEquals(0, commonUtils.getIdentityIntersectionSize(Collections.singletonList("c"), Stream.of(a, b).collect(Collectors.toList())));
+        }
+
+        @Test
+        void largeCollections_areCounted() {
+            List<Object> listA = Stream.generate(Object::new).limit(5000).collect(Collectors.toList());
+            List<Object> listB = listA.subList(1000, 5000);
+
+            assertEquals(4000, commonUtils.getIdentityIntersectionSize(listA, listB));
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package org.architectdrone.javacodereviewprototype.utils.common;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ForkJoinPoolsTest {
+    @Test
+    void poolsHaveTheRequestedParallelism() {
+        assertEquals(2, ForkJoinPools.getShared(2).getParallelism());
+        assertEquals(3, ForkJoinPools.getShared(3).getParallelism());
+    }
+
+    @Test
+    void poolsAreShared() {
+        assertSame(ForkJoinPools.getShared(2), ForkJoinPools.getShared(2));
+        assertNotSame(ForkJoinPools.getShared(2), ForkJoinPools.getShared(3));
+    }
+}
\ No newline at end of file
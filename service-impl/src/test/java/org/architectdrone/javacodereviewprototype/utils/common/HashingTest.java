@@ -0,0 +1,13 @@
+package org.architectdrone.javacodereviewprototype.utils.common;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HashingTest {
+    @Test
+    void mix_isTheSplitMix64Finalizer() {
+        assertEquals(0, Hashing.mix(0));
+        assertEquals(0x5692161D100B05E5L, Hashing.mix(1));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,107 @@
+package org.architectdrone.javacodereviewprototype.utils.strings;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import org.architectdrone.javacodereviewprototype.dependencyinjection.DefaultModule;
+import org.architectdrone.javacodereviewprototype.java.MemberPartitioning;
+import org.architectdrone.javacodereviewprototype.utils.common.CommonUtilsImpl;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyFloat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class CachingStringSimilarityTest {
+    StringSimilarityImpl delegate = spy(new StringSimilarityImpl(new CommonUtilsImpl()));
+
+    @Nested
+    class getStringSimilarityTests
+    {
+        @Test
+        void whenCalledTwice_delegateIsCalledOnce() {
+            CachingStringSimilarity stringSimilarity = new CachingStringSimilarity(delegate);
+
+            assertEquals((float) 6/5, stringSimilarity.getStringSimilarity("helloa", "hellob", 3));
+            assertEquals((float) 6/5, stringSimilarity.getStringSimilarity("helloa", "hellob", 3));
+
+            verify(delegate, times(1)).getStringSimilarity(eq("helloa"), eq("hellob"), eq(3), anyFloat());
+            assertEquals(1, stringSimilarity.getHitCount());
+            assertEquals(1, stringSimilarity.getMissCount());
+        }
+
+        @Test
+        void whenNDiffers_resultsAreKeptApart() {
+            CachingStringSimilarity stringSimilarity = new CachingStringSimilarity(delegate);
+
+            assertEquals(delegate.getStringSimilarity("getValue", "setValue", 2), stringSimilarity.getStringSimilarity("getValue", "setValue", 2));
+            assertEquals(delegate.getStringSimilarity("getValue", "setValue", 3), stringSimilarity.getStringSimilarity("getValue", "setValue", 3));
+            assertEquals(0, stringSimilarity.getHitCount());
+            assertEquals(2, stringSimilarity.getMissCount());
+        }
+
+        @Test
+        void whenFull_oldResultsAreEvicted() {
+            CachingStringSimilarity stringSimilarity = new CachingStringSimilarity(delegate, 32);
+
+            for (int i = 0; i < 1000; i++) {
+                stringSimilarity.getStringSimilarity("value" + i, "value", 3);
+            }
+
+            assertTrue(stringSimilarity.getSize() <= 32);
+            assertTrue(stringSimilarity.getSize() > 0);
+        }
+    }
+
+    @Nested
+    class minimumSimilarityTests
+    {
+        @Test
+        void resultsBelowTheMinimum_areNotRemembered() {
+            CachingStringSimilarity stringSimilarity = new CachingStringSimilarity(delegate);
+
+            assertTrue(stringSimilarity.getStringSimilarity("hello", "whats", 3, 1.0f) < 1.0f);
+            assertEquals(0, stringSimilarity.getSize());
+        }
+
+        @Test
+        void rememberedResults_areExact() {
+            CachingStringSimilarity stringSimilarity = new CachingStringSimilarity(delegate);
+
+            assertEquals((float) 6/5, stringSimilarity.getStringSimilarity("helloa", "hellob", 3, 1.0f));
+            assertEquals((float) 6/5, stringSimilarity.getStringSimilarity("helloa", "hellob", 3, 1.5f));
+            assertEquals(1, stringSimilarity.getHitCount());
+        }
+    }
+
+    @Nested
+    class getProfileSimilarityTests
+    {
+        @Test
+        void profiles_arePassedStraightToTheDelegate() {
+            CachingStringSimilarity stringSimilarity = new CachingStringSimilarity(delegate);
+            NGramProfile a = stringSimilarity.getProfile("helloa", 3);
+            NGramProfile b = stringSimilarity.getProfile("hellob", 3);
+
+            assertEquals((float) 6/5, stringSimilarity.getStringSimilarity(a, b, 1.0f));
+            assertEquals((float) 6/5, stringSimilarity.getStringSimilarity(a, b, 1.0f));
+
+            verify(delegate, times(2)).getStringSimilarity(eq(a), eq(b), eq(1.0f));
+            assertEquals(0, stringSimilarity.getHitCount());
+            assertEquals(0, stringSimilarity.getMissCount());
+            assertEquals(0, stringSimilarity.getSize());
+        }
+    }
+
+    @Test
+    void defaultModule_onlyCachesWhereStringsAreCompared() {
+        Injector injector = Guice.createInjector(new DefaultModule());
+
+        assertTrue(injector.getInstance(StringSimilarity.class) instanceof StringSimilarityImpl);
+        assertSame(injector.getInstance(CachingStringSimilarity.class), injector.getInstance(CachingStringSimilarity.class));
+        assertNotNull(injector.getInstance(MemberPartitioning.class));
+    }
+}
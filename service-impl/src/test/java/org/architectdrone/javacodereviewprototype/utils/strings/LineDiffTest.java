@@ -0,0 +1,38 @@
+package org.architectdrone.javacodereviewprototype.utils.strings;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LineDiffTest {
+    @Test
+    void identicalTexts_areFullyAligned() {
+        assertArrayEquals(new int[]{0, 1, 2}, LineDiff.getUnchangedLines("a\nb\nc", "a\nb\nc", 10));
+    }
+
+    @Test
+    void insertedLines_shiftTheLinesAfterThem() {
+        assertArrayEquals(new int[]{0, 1, 4, 5}, LineDiff.getUnchangedLines("a\nb\nc\nd", "a\nb\nx\ny\nc\nd", 10));
+    }
+
+    @Test
+    void changedLines_areNotAligned() {
+        assertArrayEquals(new int[]{0, -1, 2}, LineDiff.getUnchangedLines("a\nb\nc", "a\nx\nc", 10));
+    }
+
+    @Test
+    void changesInTheMiddle_keepTheLongestCommonSubsequence() {
+        assertArrayEquals(new int[]{0, -1, 1, -1, 3, 4, -1}, LineDiff.getUnchangedLines("a\nb\nc\nd\ne\nf\ng", "a\nc\nx\ne\nf\nh", 10));
+    }
+
+    @Test
+    void lineEndingsDoNotMatter() {
+        assertArrayEquals(new int[]{0, 1}, LineDiff.getUnchangedLines("a\r\nb", "a\nb", 10));
+    }
+
+    @Test
+    void whenThereAreTooManyEdits_returnsNull() {
+        assertNull(LineDiff.getUnchangedLines("a\nb\nc\nd", "w\nx\ny\nz", 3));
+        assertNotNull(LineDiff.getUnchangedLines("a\nb\nc\nd", "w\nx\ny\nz", 8));
+    }
+}
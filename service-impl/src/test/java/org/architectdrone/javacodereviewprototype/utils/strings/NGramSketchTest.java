@@ -0,0 +1,93 @@
+package org.architectdrone.javacodereviewprototype.utils.strings;
+
+import java.util.Random;
+
+import org.architectdrone.javacodereviewprototype.utils.common.CommonUtilsImpl;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NGramSketchTest {
+    StringSimilarityImpl stringSimilarity = new StringSimilarityImpl(new CommonUtilsImpl());
+
+    private String getRandomString(Random random, int length, int alphabetSize) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            builder.append((char) ('a' + random.nextInt(alphabetSize)));
+        }
+        return builder.toString();
+    }
+
+    @Nested
+    class sketchTests
+    {
+        @Test
+        void shortValues_areNotSketched() {
+            assertNull(stringSimilarity.getProfile("hello", 3).getSketch());
+        }
+
+        @Test
+        void longValues_areSketched() {
+            long[] sketch = stringSimilarity.getProfile("This is a Javadoc comment, and it is rather long.", 3).getSketch();
+            assertNotNull(sketch);
+            assertTrue(sketch.length * Long.SIZE >= 256);
+            assertTrue(sketch.length * Long.SIZE <= 1024);
+        }
+    }
+
+    @Nested
+    class maximumIntersectionTests
+    {
+        @Test
+        void isNeverBelowTheIntersection() {
+            Random random = new Random(42);
+            for (int i = 0; i < 200; i++) {
+                String a = getRandomString(random, 20 + random.nextInt(400), 6);
+                String b = random.nextBoolean() ? getRandomString(random, 20 + random.nextInt(400), 6) : a.substring(random.nextInt(10)) + "xyz";
+                NGramProfile profileA = stringSimilarity.getProfile(a, 3);
+                NGramProfile profileB = stringSimilarity.getProfile(b, 3);
+                if (profileA.getSketch() == null || profileB.getSketch() == null) {
+                    continue;
+                }
+
+                int intersection = PackedNGrams.intersectionSize(profileA.getPackedNGrams(), profileA.size(), profileB.getPackedNGrams(), profileB.size());
+                assertTrue(NGramSketch.maximumIntersection(profileA.getSketch(), profileA.size(), profileB.getSketch(), profileB.size()) >= intersection);
+            }
+        }
+
+        @Test
+        void unrelatedValues_haveASmallBound() {
+            NGramProfile a = stringSimilarity.getProfile("abcdefghijklmnopqrstuvwxyz", 3);
+            NGramProfile b = stringSimilarity.getProfile("ZYXWVUTSRQPONMLKJIHGFEDCBA", 3);
+
+            assertTrue(NGramSketch.maximumIntersection(a.getSketch(), a.size(), b.getSketch(), b.size()) < a.size() / 2);
+        }
+    }
+
+    @Nested
+    class minimumSimilarityTests
+    {
+        @Test
+        void isExactAboveTheMinimum_andBelowTheMinimumOtherwise() {
+            Random random = new Random(7);
+            for (int i = 0; i < 200; i++) {
+                String a = getRandomString(random, 20 + random.nextInt(200), 4);
+                String b = random.nextBoolean() ? getRandomString(random, 20 + random.nextInt(200), 4) : a.substring(random.nextInt(10)) + "ab";
+                NGramProfile profileA = stringSimilarity.getProfile(a, 3);
+                NGramProfile profileB = stringSimilarity.getProfile(b, 3);
+                float exact = stringSimilarity.getStringSimilarity(profileA, profileB);
+                for (float minimumSimilarity : new float[]{0.5f, 1f, 1.5f}) {
+                    float result = stringSimilarity.getStringSimilarity(profileA, profileB, minimumSimilarity);
+                    if (exact >= minimumSimilarity) {
+                        assertEquals(exact, result);
+                    }
+                    else {
+                        assertTrue(result < minimumSimilarity);
+                        assertTrue(result >= exact);
+                    }
+                }
+            }
+        }
+    }
+}
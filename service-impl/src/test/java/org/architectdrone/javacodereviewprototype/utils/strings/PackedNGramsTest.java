@@ -0,0 +1,108 @@
+package org.architectdrone.javacodereviewprototype.utils.strings;
+
+import org.architectdrone.javacodereviewprototype.utils.common.CommonUtilsImpl;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PackedNGramsTest {
+    StringSimilarityImpl stringSimilarity = new StringSimilarityImpl(new CommonUtilsImpl());
+
+    @Nested
+    class fillTests
+    {
+        @Test
+        void repeatedNGrams_areCountedOnce() {
+            long[] buffer = new long[PackedNGrams.capacityFor("aaaaa", 3)];
+            assertEquals(1, PackedNGrams.fill("aaaaa", 3, buffer));
+        }
+
+        @Test
+        void nGramsAreSorted() {
+            long[] profile = PackedNGrams.profile("backpack", 3);
+            assertEquals(5, profile.length);
+            for (int i = 1; i < profile.length; i++) {
+                assertTrue(profile[i - 1] < profile[i]);
+            }
+        }
+
+        @Test
+        void shortStringsDoNotCollideWithPaddedStrings() {
+            long[] shortString = PackedNGrams.profile("ab", 3);
+            long[] paddedString = PackedNGrams.profile("\0ab", 3);
+            assertNotEquals(shortString[0], paddedString[0]);
+        }
+    }
+
+    @Nested
+    class similarityTests
+    {
+        @CsvSource({
+                "hello, hello, 3",
+                "hello, whats, 3",
+                "hello, whatsup, 3",
+                "hello, '', 3",
+                "'', '', 3",
+                "helloa, hellob, 3",
+                "zzzzza, yyyyya, 3",
+                "abcdef, defabc, 3",
+                "backpack, packback, 3",
+                "aaaaaa, aaa, 3",
+                "hi, hi, 3",
+                "hi, hit, 3",
+                "getValue, setValue, 2",
+                "getValue, setValue, 1",
+                "i, j, 1",
+        })
+        @ParameterizedTest
+        void matchesSetBasedSimilarity(String a, String b, int n) {
+            float expected = stringSimilarity.getNGramsSimilarity(stringSimilarity.getNGrams(a, n), stringSimilarity.getNGrams(b, n));
+            assertEquals(expected, PackedNGrams.similarity(a, b, n));
+            assertEquals(expected, stringSimilarity.getStringSimilarity(a, b, n));
+        }
+
+        @Test
+        void buffersGrowForLongStrings() {
+            StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < 1000; i++) {
+                builder.append((char) ('a' + i % 26));
+            }
+            String a = builder.toString();
+            assertEquals(2, PackedNGrams.similarity(a, a, 3));
+        }
+    }
+
+    @Nested
+    class minimumSimilarityTests
+    {
+        @CsvSource({
+                "hello, hello",
+                "hello, whats",
+                "hello, ''",
+                "helloa, hellob",
+                "abcdef, defabc",
+                "backpack, packback",
+                "aaaaaa, aaa",
+                "getValue, setValue",
+                "somethingRatherLong, something",
+                "i, j",
+        })
+        @ParameterizedTest
+        void isExactAboveTheMinimum_andBelowTheMinimumOtherwise(String a, String b) {
+            float exact = PackedNGrams.similarity(a, b, 3);
+            for (float minimumSimilarity : new float[]{-1f, 0f, 0.5f, 2f/3, 1f, 6f/5, 1.5f, 2f}) {
+                float result = PackedNGrams.similarity(a, b, 3, minimumSimilarity);
+                if (exact >= minimumSimilarity) {
+                    assertEquals(exact, result);
+                }
+                else {
+                    assertTrue(result < minimumSimilarity);
+                    assertTrue(result >= exact);
+                }
+            }
+        }
+    }
+}
@@ -163,4 +163,47 @@ class StringSimilarityImplTest {
             assertEquals(((float) 2/3), stringSimilarity.getStringSimilarity(a, b, 3));
         }
     }
-}
\ No newline at end of file
+
+    @Nested
+    class getProfileSimilarityTests
+    {
+        @Test
+        void whenNIsSmall_profileIsPacked()
+        {
+            assertTrue(stringSimilarity.getProfile("hello", 3).isPacked());
+        }
+
+        @Test
+        void whenNIsLarge_profileIsNotPacked()
+        {
+            assertFalse(stringSimilarity.getProfile("hello", 4).isPacked());
+        }
+
+        @Test
+        void whenStringsDifferByOne()
+        {
+            NGramProfile a = stringSimilarity.getProfile("helloa", 3);
+            NGramProfile b = stringSimilarity.getProfile("hellob", 3);
+
+            assertEquals((float) 6/5, stringSimilarity.getStringSimilarity(a, b));
+        }
+
+        @Test
+        void whenStringsAreSwitched()
+        {
+            NGramProfile a = stringSimilarity.getProfile("abcdef", 3);
+            NGramProfile b = stringSimilarity.getProfile("defabc", 3);
+
+            assertEquals(((float) 2/3), stringSimilarity.getStringSimilarity(a, b));
+        }
+
+        @Test
+        void whenProfilesAreNotPacked_matchesStringSimilarity()
+        {
+            NGramProfile a = new NGramProfile("abcdefg", 4);
+            NGramProfile b = new NGramProfile("defabcg", 4);
+
+            assertEquals(stringSimilarity.getStringSimilarity("abcdefg", "defabcg", 4), stringSimilarity.getStringSimilarity(a, b));
+        }
+    }
+}